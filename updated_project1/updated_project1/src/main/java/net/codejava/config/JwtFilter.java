@@ -4,12 +4,17 @@ import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import net.codejava.service.CustomUserDetailsService;
+import net.codejava.service.RoleVersionService;
 import net.codejava.service.TokenBlacklistService;
+import net.codejava.service.TokenEpochService;
+import net.codejava.util.JwtPrincipal;
 import net.codejava.util.JwtUtil;
+import net.codejava.util.VerifiedToken;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -20,13 +25,18 @@ import java.io.IOException;
 public class JwtFilter extends OncePerRequestFilter {
 
     private final JwtUtil jwt;
-    private final UserDetailsService uds;
+    private final CustomUserDetailsService uds;
     private final TokenBlacklistService blacklist;
+    private final RoleVersionService roleVersions;
+    private final TokenEpochService epochs;
 
-    public JwtFilter(JwtUtil jwt, UserDetailsService uds, TokenBlacklistService blacklist) {
+    public JwtFilter(JwtUtil jwt, CustomUserDetailsService uds, TokenBlacklistService blacklist,
+                     RoleVersionService roleVersions, TokenEpochService epochs) {
         this.jwt = jwt;
         this.uds = uds;
         this.blacklist = blacklist;
+        this.roleVersions = roleVersions;
+        this.epochs = epochs;
     }
 
     @Override
@@ -37,19 +47,41 @@ public class JwtFilter extends OncePerRequestFilter {
         if (h != null && h.startsWith("Bearer ")) {
             String token = h.substring(7);
 
-            String jti = jwt.extractJti(token);
-            String key = "bl:access:" + (jti != null ? jti : Integer.toHexString(token.hashCode()));
+            // one parse + signature check; everything below reads from the result
+            VerifiedToken verified = jwt.verify(token).orElse(null);
 
-            if (!blacklist.isBlacklisted(key) && jwt.validateToken(token)) {
-                String username = jwt.extractUsername(token);
-                UserDetails user = uds.loadUserByUsername(username);
+            if (verified != null
+                    && !epochs.isRevoked(verified)
+                    && !blacklist.isBlacklisted(TokenBlacklistService.accessKey(verified))) {
+                req.setAttribute(JwtUtil.VERIFIED_TOKEN_ATTR, verified);
+                UsernamePasswordAuthenticationToken authToken = authenticate(verified);
 
-                var authToken = new UsernamePasswordAuthenticationToken(
-                        user, null, user.getAuthorities());
-                authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(req));
-                SecurityContextHolder.getContext().setAuthentication(authToken);
+                if (authToken != null) {
+                    authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(req));
+                    SecurityContextHolder.getContext().setAuthentication(authToken);
+                }
             }
         }
         chain.doFilter(req, res);
     }
+
+    private UsernamePasswordAuthenticationToken authenticate(VerifiedToken verified) {
+        Long roleVersion = jwt.isStatelessAuthorities() && verified.hasAuthorities()
+                ? roleVersions.current(verified.subject())
+                : null;
+        // without a known version (Redis down) the token's roles cannot be trusted; roles come from the DB below
+        if (roleVersion != null) {
+            // roles changed since the token was minted -> force a refresh
+            if (verified.roleVersion() != roleVersion) {
+                return null;
+            }
+            var authorities = verified.roles().stream()
+                    .map(r -> new SimpleGrantedAuthority("ROLE_" + r))
+                    .toList();
+            return new UsernamePasswordAuthenticationToken(
+                    new JwtPrincipal(verified.userId(), verified.subject()), null, authorities);
+        }
+        UserDetails user = uds.loadPrincipal(verified.subject());
+        return new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
+    }
 }
@@ -0,0 +1,49 @@
+package net.codejava.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import net.codejava.util.BoundedPasswordEncoder;
+import net.codejava.util.CalibratedBCryptPasswordEncoder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Password encoder, kept apart from SecurityConfig so services that need it
+ * (e.g. background rehash in CustomUserDetailsService) don't create a cycle.
+ */
+@Configuration
+public class PasswordEncoderConfig {
+
+    /*
+     * New hashes are stored as {bcrypt}$2a$<cost>$..., with the cost calibrated at
+     * startup unless app.password-hashing.cost pins it. Legacy un-prefixed hashes
+     * still match and are reported by upgradeEncoding so they get rewritten.
+     * BCrypt runs on its own bounded pool, off the Tomcat request threads.
+     */
+    @Bean
+    public PasswordEncoder passwordEncoder(
+            MeterRegistry meterRegistry,
+            @Value("${app.password-hashing.cost:0}") int pinnedCost,
+            @Value("${app.password-hashing.target:250ms}") Duration target,
+            @Value("${app.password-hashing.min-cost:10}") int minCost,
+            @Value("${app.password-hashing.max-cost:16}") int maxCost,
+            @Value("${app.password-hashing.threads:0}") int threads,
+            @Value("${app.password-hashing.queue-capacity:64}") int queueCapacity,
+            @Value("${app.password-hashing.max-wait:5s}") Duration maxWait,
+            @Value("${app.password-hashing.retry-after-seconds:1}") long retryAfterSeconds) {
+        int cost = pinnedCost > 0 ? pinnedCost : CalibratedBCryptPasswordEncoder.calibrate(target, minCost, maxCost);
+        CalibratedBCryptPasswordEncoder bcrypt = new CalibratedBCryptPasswordEncoder(cost);
+
+        DelegatingPasswordEncoder versioned = new DelegatingPasswordEncoder("bcrypt", Map.of("bcrypt", bcrypt));
+        versioned.setDefaultPasswordEncoderForMatches(bcrypt);
+
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        return new BoundedPasswordEncoder(versioned, poolSize, queueCapacity,
+                maxWait, retryAfterSeconds, meterRegistry);
+    }
+}
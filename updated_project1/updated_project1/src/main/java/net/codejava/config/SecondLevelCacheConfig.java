@@ -0,0 +1,145 @@
+package net.codejava.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.redisson.Redisson;
+import org.redisson.api.RedissonClient;
+import org.redisson.codec.SerializationCodec;
+import org.redisson.config.Config;
+import org.redisson.jcache.configuration.RedissonConfiguration;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.StringUtils;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.configuration.MutableConfiguration;
+import javax.cache.expiry.CreatedExpiryPolicy;
+import java.time.Duration;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hibernate second-level cache for Student, AppUser and AppUser.roles (READ_WRITE,
+ * so entity writes through Hibernate keep the regions consistent).
+ *
+ * Regions are JCache caches created here:
+ * <ul>
+ *   <li>{@code local} - Caffeine, bounded by max-entries per region and a TTL;</li>
+ *   <li>{@code redis} - Redisson, shared by every node; entries expire after the TTL
+ *       and overall size is left to Redis's maxmemory policy.</li>
+ * </ul>
+ * Hit/miss counts per region are published as hibernate.l2.requests.
+ *
+ * application.properties sets hibernate.cache.use_second_level_cache=false, so the
+ * cache is on only when this config loads and registers the region factory together
+ * with the manager it built.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.l2-cache.enabled", havingValue = "true", matchIfMissing = true)
+public class SecondLevelCacheConfig {
+
+    static final List<String> REGIONS = List.of("students", "users", "users.roles");
+
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnProperty(name = "app.l2-cache.provider", havingValue = "redis")
+    public RedissonClient secondLevelCacheRedisson(RedisProperties redisProperties) {
+        return Redisson.create(redissonConfig(redisProperties));
+    }
+
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager(@Value("${app.l2-cache.max-entries:10000}") long maxEntries,
+                                              @Value("${app.l2-cache.ttl:10m}") Duration ttl,
+                                              ObjectProvider<RedissonClient> redissonProvider) {
+        RedissonClient redisson = redissonProvider.getIfAvailable();
+        if (redisson != null) {
+            CacheManager manager = Caching.getCachingProvider("org.redisson.jcache.JCachingProvider").getCacheManager();
+            MutableConfiguration<Object, Object> base = new MutableConfiguration<>()
+                    .setExpiryPolicyFactory(CreatedExpiryPolicy.factoryOf(
+                            new javax.cache.expiry.Duration(TimeUnit.MILLISECONDS, ttl.toMillis())));
+            for (String region : REGIONS) {
+                manager.createCache(region, RedissonConfiguration.fromInstance(redisson, base));
+            }
+            return manager;
+        }
+
+        CacheManager manager = Caching
+                .getCachingProvider("com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider")
+                .getCacheManager();
+        for (String region : REGIONS) {
+            CaffeineConfiguration<Object, Object> config = new CaffeineConfiguration<>();
+            config.setMaximumSize(OptionalLong.of(maxEntries));
+            config.setExpireAfterWrite(OptionalLong.of(ttl.toNanos()));
+            manager.createCache(region, config);
+        }
+        return manager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheProperties(CacheManager hibernateCacheManager) {
+        return props -> {
+            props.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+            props.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+            props.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+            props.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+            // per-region hit/miss counts below
+            props.put(AvailableSettings.GENERATE_STATISTICS, true);
+        };
+    }
+
+    @Bean
+    public MeterBinder secondLevelCacheMetrics(EntityManagerFactory entityManagerFactory) {
+        return registry -> {
+            Statistics stats = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+            for (String region : REGIONS) {
+                FunctionCounter.builder("hibernate.l2.requests", stats, s -> regionStats(s, region).getHitCount())
+                        .tags("region", region, "result", "hit")
+                        .register(registry);
+                FunctionCounter.builder("hibernate.l2.requests", stats, s -> regionStats(s, region).getMissCount())
+                        .tags("region", region, "result", "miss")
+                        .register(registry);
+                FunctionCounter.builder("hibernate.l2.puts", stats, s -> regionStats(s, region).getPutCount())
+                        .tags("region", region)
+                        .register(registry);
+                Gauge.builder("hibernate.l2.hit.ratio", stats, s -> {
+                            CacheRegionStatistics r = regionStats(s, region);
+                            long total = r.getHitCount() + r.getMissCount();
+                            return total == 0 ? 0.0 : (double) r.getHitCount() / total;
+                        })
+                        .tags("region", region)
+                        .register(registry);
+            }
+        };
+    }
+
+    private static CacheRegionStatistics regionStats(Statistics stats, String region) {
+        return stats.getDomainDataRegionStatistics(region);
+    }
+
+    private static Config redissonConfig(RedisProperties redis) {
+        Config config = new Config();
+        // Hibernate cache entries are Serializable; plain JDK serialization avoids codec surprises
+        config.setCodec(new SerializationCodec());
+        String scheme = redis.getSsl().isEnabled() ? "rediss://" : "redis://";
+        var server = config.useSingleServer()
+                .setAddress(scheme + redis.getHost() + ":" + redis.getPort())
+                .setDatabase(redis.getDatabase());
+        if (StringUtils.hasText(redis.getUsername())) server.setUsername(redis.getUsername());
+        if (StringUtils.hasText(redis.getPassword())) server.setPassword(redis.getPassword());
+        return config;
+    }
+}
@@ -1,11 +1,31 @@
 package net.codejava.controller;
 
 import net.codejava.repository.AppUserRepository;
+import net.codejava.repository.StudentRepository;
+import net.codejava.service.CountService;
+import net.codejava.service.CustomUserDetailsService;
+import net.codejava.service.EntityCacheSync;
+import net.codejava.service.LoginThrottleService;
+import net.codejava.service.RefreshTokenService;
+import net.codejava.service.RoleVersionService;
+import net.codejava.service.StudentTypeahead;
+import net.codejava.service.TokenEpochService;
+import net.codejava.service.UserProvisioningService;
+import net.codejava.service.UserProvisioningService.ProvisioningReport;
+import net.codejava.util.AfterCommit;
+import org.springframework.http.MediaType;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.support.PageableExecutionUtils;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -14,9 +34,39 @@ import java.util.Set;
 public class AdminController {
 
     private final AppUserRepository repo;
+    private final RoleVersionService roleVersionService;
+    private final CustomUserDetailsService userDetailsService;
+    private final RefreshTokenService refreshTokenService;
+    private final TokenEpochService tokenEpochService;
+    private final LoginThrottleService loginThrottleService;
+    private final UserProvisioningService provisioningService;
+    private final CountService countService;
+    private final StudentTypeahead typeahead;
+    private final StudentRepository studentRepository;
+    private final EntityCacheSync entityCache;
 
-    public AdminController(AppUserRepository repo) {
+    public AdminController(AppUserRepository repo,
+                           RoleVersionService roleVersionService,
+                           CustomUserDetailsService userDetailsService,
+                           RefreshTokenService refreshTokenService,
+                           TokenEpochService tokenEpochService,
+                           LoginThrottleService loginThrottleService,
+                           UserProvisioningService provisioningService,
+                           CountService countService,
+                           StudentTypeahead typeahead,
+                           StudentRepository studentRepository,
+                           EntityCacheSync entityCache) {
         this.repo = repo;
+        this.roleVersionService = roleVersionService;
+        this.userDetailsService = userDetailsService;
+        this.refreshTokenService = refreshTokenService;
+        this.tokenEpochService = tokenEpochService;
+        this.loginThrottleService = loginThrottleService;
+        this.provisioningService = provisioningService;
+        this.countService = countService;
+        this.typeahead = typeahead;
+        this.studentRepository = studentRepository;
+        this.entityCache = entityCache;
     }
 
     @PreAuthorize("hasRole('ADMIN')")
@@ -31,17 +81,127 @@ public class AdminController {
     @GetMapping("/users/page")
     public ResponseEntity<PageResponse<UserSummary>> listUsersPaged(
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String count) {
+
+        CountService.Mode countMode;
+        try {
+            countMode = CountService.Mode.parse(count);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
 
         var pageable = PageRequest.of(page, size);
-        var result = repo.findAll(pageable);
+        var counted = countService.page("users", null, countMode, repo::count,
+                total -> PageableExecutionUtils.getPage(repo.findAllBy(pageable).getContent(), pageable, total));
+        var result = counted.page();
         var content = result.getContent().stream()
                 .map(u -> new UserSummary(u.getId(), u.getUsername(), u.getRoles()))
                 .toList();
 
-        return ResponseEntity.ok(
-                new PageResponse<>(content, page, size, result.getTotalElements(), result.getTotalPages())
-        );
+        return ResponseEntity.ok(new PageResponse<>(content, page, size, result.getTotalElements(),
+                result.getTotalPages(), counted.mode().label()));
+    }
+
+    // Streams a JSON array of {username,password,roles} or CSV (username,password,roles with '|' between roles)
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping(value = "/users/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, "text/csv"})
+    public ResponseEntity<ProvisioningReport> bulkCreateUsers(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            InputStream body) throws IOException {
+        ProvisioningReport report = MediaType.parseMediaType(contentType).isCompatibleWith(MediaType.APPLICATION_JSON)
+                ? provisioningService.provisionJson(body)
+                : provisioningService.provisionCsv(body);
+        return ResponseEntity.ok(report);
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @PutMapping("/users/{id}/roles")
+    public ResponseEntity<UserSummary> updateRoles(@PathVariable Long id, @RequestBody Set<String> roles) {
+        if (roles == null || roles.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        return repo.findById(id)
+                .map(u -> {
+                    u.setRoles(new HashSet<>(roles));
+                    repo.save(u);
+                    // other nodes' second-level cache still holds the old roles collection
+                    entityCache.evictUser(u.getId());
+                    // invalidate tokens that still carry the old roles
+                    roleVersionService.bump(u.getUsername());
+                    userDetailsService.evict(u.getUsername());
+                    return ResponseEntity.ok(new UserSummary(u.getId(), u.getUsername(), u.getRoles()));
+                })
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    // students reference their owner with ON DELETE RESTRICT, so owners are refused before anything is touched
+    @PreAuthorize("hasRole('ADMIN')")
+    @DeleteMapping("/users/{id}")
+    @Transactional
+    public ResponseEntity<?> deleteUser(@PathVariable Long id) {
+        return repo.findById(id)
+                .map(u -> {
+                    if (studentRepository.existsByOwner_Id(u.getId())) {
+                        return ResponseEntity.status(HttpStatus.CONFLICT)
+                                .body("User still owns students; delete or reassign them first");
+                    }
+                    refreshTokenService.deleteTokensByUser(u);
+                    repo.delete(u);
+                    entityCache.evictUser(u.getId());
+                    // Redis-side revocation only once the delete is durable
+                    String username = u.getUsername();
+                    AfterCommit.run(() -> {
+                        tokenEpochService.revokeAll(username);
+                        roleVersionService.bump(username);
+                        userDetailsService.evict(username);
+                    });
+                    return ResponseEntity.noContent().build();
+                })
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    // Lockout: kills every outstanding access token and the refresh token
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/users/{id}/revoke-tokens")
+    public ResponseEntity<Void> revokeTokens(@PathVariable Long id) {
+        return repo.findById(id)
+                .map(u -> {
+                    refreshTokenService.deleteTokensByUser(u);
+                    tokenEpochService.revokeAll(u.getUsername());
+                    return ResponseEntity.noContent().<Void>build();
+                })
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    // Emergency: invalidates every access token issued so far, for all users
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/tokens/revoke-all")
+    public ResponseEntity<Void> revokeAllTokens() {
+        tokenEpochService.revokeAllGlobally();
+        return ResponseEntity.noContent().build();
+    }
+
+    // Currently throttled login keys ("u:<username>" / "ip:<address>") with time left
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/throttle")
+    public List<LoginThrottleService.Block> throttledKeys() {
+        return loginThrottleService.activeBlocks();
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @DeleteMapping("/throttle/{key}")
+    public ResponseEntity<Void> unthrottle(@PathVariable String key) {
+        return loginThrottleService.unblock(key)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.notFound().build();
+    }
+
+    // Size of the in-memory student typeahead index
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/typeahead")
+    public StudentTypeahead.Stats typeaheadStats() {
+        return typeahead.stats();
     }
 
     public record UserSummary(Long id, String username, Set<String> roles) {}
@@ -52,13 +212,16 @@ public class AdminController {
         public int size;
         public long totalElements;
         public int totalPages;
+        public String countMode;
 
-        public PageResponse(List<T> content, int page, int size, long totalElements, int totalPages) {
+        public PageResponse(List<T> content, int page, int size, long totalElements, int totalPages,
+                            String countMode) {
             this.content = content;
             this.page = page;
             this.size = size;
             this.totalElements = totalElements;
             this.totalPages = totalPages;
+            this.countMode = countMode;
         }
     }
 }
@@ -3,11 +3,19 @@ package net.codejava.controller;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import net.codejava.util.JwtUtil;
+import net.codejava.util.VerifiedToken;
 import net.codejava.service.TokenBlacklistService;
+import net.codejava.service.CustomUserDetailsService;
+import net.codejava.service.LoginThrottleService;
+import net.codejava.service.RefreshCoalescer;
+import net.codejava.service.RefreshCoalescer.RefreshOutcome;
 import net.codejava.service.RefreshTokenService;
+import net.codejava.service.RoleVersionService;
 import net.codejava.model.AppUser;
 import net.codejava.model.RefreshToken;
 import net.codejava.repository.AppUserRepository;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException;
@@ -30,35 +38,70 @@ public class AuthController {
     private final PasswordEncoder encoder;
     private final AppUserRepository userRepository;
     private final RefreshTokenService refreshTokenService;
+    private final RoleVersionService roleVersionService;
+    private final CustomUserDetailsService userDetailsService;
+    private final RefreshCoalescer refreshCoalescer;
+    private final LoginThrottleService loginThrottleService;
 
     public AuthController(AuthenticationManager authenticationManager,
                           JwtUtil jwtUtil,
                           PasswordEncoder encoder,
                           AppUserRepository userRepository,
                           TokenBlacklistService tokenBlacklistService,
-                          RefreshTokenService refreshTokenService){
+                          RefreshTokenService refreshTokenService,
+                          RoleVersionService roleVersionService,
+                          CustomUserDetailsService userDetailsService,
+                          RefreshCoalescer refreshCoalescer,
+                          LoginThrottleService loginThrottleService){
         this.authenticationManager = authenticationManager;
         this.tokenBlacklistService = tokenBlacklistService;
         this.jwtUtil = jwtUtil;
         this.encoder = encoder;
         this.userRepository = userRepository;
         this.refreshTokenService = refreshTokenService;
+        this.roleVersionService = roleVersionService;
+        this.userDetailsService = userDetailsService;
+        this.refreshCoalescer = refreshCoalescer;
+        this.loginThrottleService = loginThrottleService;
+    }
+
+    // Role version is only needed (and only looked up) when roles go into the token
+    private String issueAccessToken(AppUser user) {
+        if (!jwtUtil.isStatelessAuthorities()) {
+            return jwtUtil.generateToken(user, 0L);
+        }
+        // Redis down: -1 never matches a real version, so the token is refreshed once versions are readable again
+        Long roleVersion = roleVersionService.current(user.getUsername());
+        return jwtUtil.generateToken(user, roleVersion != null ? roleVersion : -1L);
     }
 
     @PostMapping("/authenticate")
     public ResponseEntity<AuthResponse> authenticate(@RequestBody AuthRequest request,
+                                                     HttpServletRequest httpRequest,
                                                      jakarta.servlet.http.HttpServletResponse response) {
+        // Reject throttled usernames/IPs before spending a BCrypt verification on them
+        String clientIp = loginThrottleService.clientIp(httpRequest);
+        LoginThrottleService.Decision decision = loginThrottleService.check(request.getUsername(), clientIp);
+        if (!decision.allowed()) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(decision.retryAfterSeconds()))
+                    .build();
+        }
         Authentication auth;
         try {
             auth = authenticationManager.authenticate(
                     new UsernamePasswordAuthenticationToken(request.getUsername(), request.getPassword()));
         } catch (BadCredentialsException ex) {
+            loginThrottleService.recordFailure(request.getUsername(), clientIp);
             return ResponseEntity.status(401).build();
         }
-        // Generate short‑lived access token
-        String accessToken = jwtUtil.generateToken(request.getUsername());
+        loginThrottleService.recordSuccess(request.getUsername());
+        // stored hash on an old format/cost -> rewrite it in the background
+        userDetailsService.rehashIfNeeded(request.getUsername(), request.getPassword());
         // Generate and persist refresh token
         RefreshToken refreshToken = refreshTokenService.createRefreshToken(request.getUsername());
+        // Generate short‑lived access token (reuses the user loaded for the refresh token)
+        String accessToken = issueAccessToken(refreshToken.getUser());
         // Send refresh token to client via HttpOnly cookie
         jakarta.servlet.http.Cookie cookie = new jakarta.servlet.http.Cookie("refreshToken", refreshToken.getToken());
         cookie.setHttpOnly(true);
@@ -88,6 +131,7 @@ public class AuthController {
         user.setPassword(encoder.encode(request.getPassword())); // BCrypt hash
         user.setRoles(roles);
         userRepository.save(user);
+        userDetailsService.evict(user.getUsername());
         return ResponseEntity.ok(new Message("User registered successfully"));
     }
 
@@ -125,15 +169,16 @@ public class AuthController {
         if (auth == null || !auth.startsWith("Bearer ")) {
             return ResponseEntity.badRequest().body(new Message("Missing Authorization header"));
         }
-        String token = auth.substring(7);
-
-        // Prefer JTI; fallback to token hash
-        String jti = jwtUtil.extractJti(token);
-        java.util.Date exp = jwtUtil.getExpirationDate(token);
-        long ttlSeconds = Math.max(0, (exp.getTime() - System.currentTimeMillis()) / 1000);
+        // Reuse the token JwtFilter already verified; only parse again if it is missing
+        VerifiedToken verified = request.getAttribute(JwtUtil.VERIFIED_TOKEN_ATTR) instanceof VerifiedToken v
+                ? v
+                : jwtUtil.verify(auth.substring(7)).orElse(null);
+        if (verified == null) {
+            return ResponseEntity.badRequest().body(new Message("Invalid token"));
+        }
+        long ttlSeconds = Math.max(0, verified.remainingMillis() / 1000);
 
-        String key = "bl:access:" + (jti != null ? jti : Integer.toHexString(token.hashCode()));
-        tokenBlacklistService.blacklist(key, ttlSeconds);
+        tokenBlacklistService.blacklist(TokenBlacklistService.accessKey(verified), ttlSeconds);
 
         // Remove refresh token from repository and clear cookie
         jakarta.servlet.http.Cookie[] cookies = request.getCookies();
@@ -167,24 +212,23 @@ public class AuthController {
         for (jakarta.servlet.http.Cookie c : cookies) {
             if ("refreshToken".equals(c.getName())) {
                 String refreshTokenValue = c.getValue();
-                java.util.Optional<RefreshToken> opt = refreshTokenService.findByToken(refreshTokenValue);
+                // rotate refresh token (unknown or expired -> empty); concurrent calls with
+                // the same cookie share one rotation and receive the same pair
+                java.util.Optional<RefreshOutcome> opt = refreshCoalescer.refresh(refreshTokenValue,
+                        () -> refreshTokenService.rotate(refreshTokenValue)
+                                .map(rt -> new RefreshOutcome(issueAccessToken(rt.getUser()),
+                                        rt.getToken(), rt.getExpiryDate().getTime())));
                 if (opt.isEmpty()) {
                     return ResponseEntity.status(403).build();
                 }
-                RefreshToken rt = opt.get();
-                if (!refreshTokenService.verifyExpiration(rt)) {
-                    return ResponseEntity.status(403).build();
-                }
-                String username = rt.getUser().getUsername();
-                String newAccessToken = jwtUtil.generateToken(username);
-                // rotate refresh token
-                RefreshToken newRt = refreshTokenService.createRefreshToken(username);
-                jakarta.servlet.http.Cookie newCookie = new jakarta.servlet.http.Cookie("refreshToken", newRt.getToken());
+                RefreshOutcome outcome = opt.get();
+                String newAccessToken = outcome.accessToken();
+                jakarta.servlet.http.Cookie newCookie = new jakarta.servlet.http.Cookie("refreshToken", outcome.refreshToken());
                 newCookie.setHttpOnly(true);
                 newCookie.setSecure(false);
                 newCookie.setPath("/");
                 long newMaxAge = Math.max(1L,
-                        (newRt.getExpiryDate().getTime() - System.currentTimeMillis()) / 1000);
+                        (outcome.refreshExpiresAt() - System.currentTimeMillis()) / 1000);
                 newCookie.setMaxAge((int) newMaxAge);
                 response.addCookie(newCookie);
                 return ResponseEntity.ok(new AuthResponse(newAccessToken));
@@ -1,18 +1,32 @@
 package net.codejava.controller;
 
+import net.codejava.dto.StudentCursor;
 import net.codejava.dto.StudentDTO;
+import net.codejava.service.CountService;
+import net.codejava.service.StudentBulkService;
+import net.codejava.service.CountService.CountedPage;
+import net.codejava.service.StudentExportService;
+import net.codejava.service.StudentImportService;
 import net.codejava.service.StudentService;
+import net.codejava.service.StudentTypeahead;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @RestController
@@ -20,9 +34,16 @@ import java.util.Optional;
 public class StudentController {
 
     private final StudentService studentService; // <-- CI: depend on service only
+    private final StudentExportService exportService;
+    private final StudentBulkService bulkService;
+    private final StudentImportService importService;
 
-    public StudentController(StudentService studentService) {
+    public StudentController(StudentService studentService, StudentExportService exportService,
+                             StudentBulkService bulkService, StudentImportService importService) {
         this.studentService = studentService;
+        this.exportService = exportService;
+        this.bulkService = bulkService;
+        this.importService = importService;
     }
 
 
@@ -39,6 +60,42 @@ public class StudentController {
     }
 
 
+    // Same rows as GET /students, streamed: format=ndjson (default) or csv
+    @GetMapping("/export")
+    public void export(@RequestParam(required = false) String format,
+                       Authentication auth,
+                       HttpServletResponse response) throws IOException {
+        StudentExportService.Format f;
+        try {
+            f = StudentExportService.Format.parse(format);
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpStatus.BAD_REQUEST.value(), "Unknown export format");
+            return;
+        }
+        response.setCharacterEncoding("UTF-8");
+        response.setContentType(f == StudentExportService.Format.CSV ? "text/csv" : "application/x-ndjson");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=students." + (f == StudentExportService.Format.CSV ? "csv" : "ndjson"));
+        if (!exportService.export(f, auth, response.getOutputStream())) {
+            response.reset();
+            response.setHeader(HttpHeaders.RETRY_AFTER, "30");
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "Too many exports in progress");
+        }
+    }
+
+
+    // Search-as-you-type over name/email: 1-2 chars match prefixes, longer queries substrings
+    @GetMapping("/typeahead")
+    public ResponseEntity<List<StudentTypeahead.Hit>> typeahead(@RequestParam String q,
+                                                                @RequestParam(defaultValue = "10") int limit,
+                                                                Authentication auth) {
+        if (!studentService.isTypeaheadEnabled()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+        return ResponseEntity.ok(studentService.typeahead(q, Math.min(Math.max(limit, 1), 50), auth));
+    }
+
+
     @PostMapping
     public ResponseEntity<StudentDTO> create(@RequestBody StudentDTO dto, Authentication auth) {
         if (dto.getName() == null || dto.getEmail() == null || dto.getAge() == null) {
@@ -50,6 +107,82 @@ public class StudentController {
     }
 
 
+    /* ---- bulk: same ownership rules as the single-item endpoints, one result per item ---- */
+
+    @PostMapping("/bulk")
+    public ResponseEntity<StudentBulkService.BulkReport> bulkCreate(@RequestBody List<StudentDTO> items,
+                                                                    Authentication auth) {
+        if (items.size() > bulkService.getMaxItems()) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        }
+        return ResponseEntity.ok(bulkService.create(items, auth));
+    }
+
+    @PatchMapping("/bulk")
+    public ResponseEntity<StudentBulkService.BulkReport> bulkPatch(@RequestBody List<StudentDTO> items,
+                                                                   Authentication auth) {
+        if (items.size() > bulkService.getMaxItems()) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        }
+        return ResponseEntity.ok(bulkService.patch(items, auth));
+    }
+
+    @DeleteMapping("/bulk")
+    public ResponseEntity<StudentBulkService.BulkReport> bulkDelete(@RequestBody List<Long> ids,
+                                                                    Authentication auth) {
+        if (ids.size() > bulkService.getMaxItems()) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        }
+        return ResponseEntity.ok(bulkService.delete(ids, auth));
+    }
+
+
+    /* ---- imports: large files run as background jobs, polled through the job resource ---- */
+
+    // JSON array / NDJSON of {name,email,age} or CSV (name,email,age); answers 202 with the queued job
+    @PostMapping(value = "/imports", consumes = {MediaType.APPLICATION_JSON_VALUE, "application/x-ndjson", "text/csv"})
+    public ResponseEntity<StudentImportService.JobView> startImport(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            @RequestHeader(value = HttpHeaders.CONTENT_LENGTH, required = false) Long contentLength,
+            InputStream body,
+            Authentication auth) throws IOException {
+        if (contentLength != null && contentLength > importService.getMaxUploadSize()) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        }
+        // without a length, reserve room for the largest accepted upload
+        if (!importService.hasSpaceFor(contentLength != null ? contentLength : importService.getMaxUploadSize())) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "60").build();
+        }
+        boolean csv = MediaType.parseMediaType(contentType).isCompatibleWith(MediaType.valueOf("text/csv"));
+        StudentImportService.Format format = csv
+                ? StudentImportService.Format.CSV
+                : StudentImportService.Format.JSON;
+        return importService.submit(body, format, auth)
+                .map(job -> ResponseEntity.status(HttpStatus.ACCEPTED).body(job))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build());
+    }
+
+    @GetMapping("/imports")
+    public List<StudentImportService.JobView> imports(Authentication auth) {
+        return importService.list(auth);
+    }
+
+    @GetMapping("/imports/{jobId}")
+    public ResponseEntity<StudentImportService.JobView> importStatus(@PathVariable String jobId, Authentication auth) {
+        return importService.find(jobId, auth)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.status(HttpStatus.NOT_FOUND).build());
+    }
+
+    // only failed jobs restart; other states are returned unchanged
+    @PostMapping("/imports/{jobId}/resume")
+    public ResponseEntity<StudentImportService.JobView> resumeImport(@PathVariable String jobId, Authentication auth) {
+        return importService.resume(jobId, auth)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.status(HttpStatus.NOT_FOUND).build());
+    }
+
+
     @GetMapping("/{id}")
     public ResponseEntity<StudentDTO> getById(@PathVariable Long id, Authentication auth) {
         return studentService.getById(id, auth)
@@ -81,24 +214,96 @@ public class StudentController {
     }
 
 
+    // Admin only: deletes every student matching the /search filters; at least one filter is required
+    @DeleteMapping
+    public ResponseEntity<Map<String, Integer>> deleteMatching(
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) String email,
+            @RequestParam(required = false) Integer minAge,
+            @RequestParam(required = false) Integer maxAge,
+            Authentication auth) {
+        if (!isAdmin(auth)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        if (name == null && email == null && minAge == null && maxAge == null) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        return ResponseEntity.ok(Map.of("deleted", studentService.deleteMatching(name, email, minAge, maxAge)));
+    }
+
+    /**
+     * Offset paging by default; {@code count=exact|cached|estimated} picks how the
+     * total is computed and the response's {@code countMode} says which was used.
+     * {@code paging=cursor} (or any {@code cursor}) switches to keyset paging: no
+     * OFFSET scan and no COUNT, and the response carries an opaque
+     * {@code nextCursor} holding the last id and the filters of the scroll.
+     */
     @GetMapping("/search")
-    public ResponseEntity<PageResponse<StudentDTO>> search(
+    public ResponseEntity<?> search(
             @RequestParam(required = false) String name,
-            @RequestParam(required = false) String email,      // (email is supported by spec if you add it there)
+            @RequestParam(required = false) String email,
             @RequestParam(required = false) Integer minAge,
             @RequestParam(required = false) Integer maxAge,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String paging,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) String count,
             Authentication auth) {
 
+        if (cursor != null || "cursor".equalsIgnoreCase(paging)) {
+            return searchByCursor(name, email, minAge, maxAge, size, cursor, auth);
+        }
+
+        CountService.Mode countMode;
+        try {
+            countMode = CountService.Mode.parse(count);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Unknown count mode");
+        }
+
         Pageable pageable = PageRequest.of(page, size, Sort.by("id").descending());
-        Page<StudentDTO> result = studentService.search(name, minAge, maxAge, pageable, auth);
+        CountedPage<StudentDTO> counted =
+                studentService.search(name, email, minAge, maxAge, pageable, countMode, auth);
+        Page<StudentDTO> result = counted.page();
 
         return ResponseEntity.ok(new PageResponse<>(
-                result.getContent(), page, size, result.getTotalElements(), result.getTotalPages()
+                result.getContent(), page, size, result.getTotalElements(), result.getTotalPages(),
+                counted.mode().label()
         ));
     }
 
+    private ResponseEntity<?> searchByCursor(String name, String email, Integer minAge, Integer maxAge, int size,
+                                             String cursor, Authentication auth) {
+        if (size < 1) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        // a slice is size + 1 rows read in one go; larger pages defeat keyset paging
+        size = Math.min(size, 100);
+        Long afterId = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            StudentCursor c;
+            try {
+                c = StudentCursor.decode(cursor);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid cursor");
+            }
+            // the cursor's filters win so a scroll cannot change shape halfway through
+            afterId = c.lastId();
+            name = c.name();
+            email = c.email();
+            minAge = c.minAge();
+            maxAge = c.maxAge();
+        }
+
+        Slice<StudentDTO> result = studentService.searchAfter(name, email, minAge, maxAge, afterId, size, auth);
+        List<StudentDTO> content = result.getContent();
+        String next = result.hasNext()
+                ? new StudentCursor(content.get(content.size() - 1).getId(), name, email, minAge, maxAge).encode()
+                : null;
+        return ResponseEntity.ok(new CursorResponse<>(content, size, next));
+    }
+
 
     public static class PageResponse<T> {
         public List<T> content;
@@ -106,13 +311,28 @@ public class StudentController {
         public int size;
         public long totalElements;
         public int totalPages;
+        public String countMode;
 
-        public PageResponse(List<T> content, int page, int size, long totalElements, int totalPages) {
+        public PageResponse(List<T> content, int page, int size, long totalElements, int totalPages,
+                            String countMode) {
             this.content = content;
             this.page = page;
             this.size = size;
             this.totalElements = totalElements;
             this.totalPages = totalPages;
+            this.countMode = countMode;
+        }
+    }
+
+    public static class CursorResponse<T> {
+        public List<T> content;
+        public int size;
+        public String nextCursor;
+
+        public CursorResponse(List<T> content, int size, String nextCursor) {
+            this.content = content;
+            this.size = size;
+            this.nextCursor = nextCursor;
         }
     }
 }
@@ -0,0 +1,44 @@
+package net.codejava.dto;
+
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque keyset cursor for /students/search: the last id returned plus the filters
+ * the scroll was started with. Owner scoping is never taken from the cursor; it
+ * always comes from the caller's authentication.
+ */
+public record StudentCursor(long lastId, String name, String email, Integer minAge, Integer maxAge) {
+
+    public String encode() {
+        String raw = lastId + "\n" + nullToEmpty(minAge) + "\n" + nullToEmpty(maxAge) + "\n"
+                + text(email) + "\n" + text(name);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** @throws IllegalArgumentException when the value is not a cursor we issued */
+    public static StudentCursor decode(String value) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+            String[] f = raw.split("\n", 5);
+            return new StudentCursor(Long.parseLong(f[0]),
+                    f[4].isEmpty() ? null : URLDecoder.decode(f[4], StandardCharsets.UTF_8),
+                    f[3].isEmpty() ? null : URLDecoder.decode(f[3], StandardCharsets.UTF_8),
+                    f[1].isEmpty() ? null : Integer.valueOf(f[1]),
+                    f[2].isEmpty() ? null : Integer.valueOf(f[2]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    // URL-encoded so a value can never contain the field separator
+    private static String text(String v) {
+        return v == null ? "" : URLEncoder.encode(v, StandardCharsets.UTF_8);
+    }
+
+    private static String nullToEmpty(Integer v) {
+        return v == null ? "" : v.toString();
+    }
+}
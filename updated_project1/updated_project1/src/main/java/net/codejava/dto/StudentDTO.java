@@ -9,6 +9,11 @@ public class StudentDTO {
 
     public StudentDTO() {}
 
+    // projection without owner (non-admin reads)
+    public StudentDTO(Long id, String name, String email, Integer age) {
+        this(id, name, email, age, null);
+    }
+
     public StudentDTO(Long id, String name, String email, Integer age, String ownerUsername) {
         this.id = id;
         this.name = name;
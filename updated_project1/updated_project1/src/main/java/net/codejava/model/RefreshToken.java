@@ -6,7 +6,9 @@ import java.util.Date;
 
 @Entity
 @Table(name = "refresh_tokens", indexes = {
-        @Index(columnList = "token", unique = true)
+        @Index(columnList = "token", unique = true),
+        // serves the batched purge of expired rows
+        @Index(name = "idx_refresh_tokens_expiry", columnList = "expiry_date")
 })
 public class RefreshToken {
     @Id
@@ -2,9 +2,13 @@ package net.codejava.model;
 
 import jakarta.persistence.*;
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 @Entity
-@Table(name = "students")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "students")
+@Table(name = "students", indexes = @Index(name = "idx_students_user", columnList = "user_id, id"))
 public class Student {
 
     @Id
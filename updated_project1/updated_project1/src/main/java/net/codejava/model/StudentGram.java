@@ -0,0 +1,60 @@
+package net.codejava.model;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * One trigram of a student's name or email (see {@code StudentTextIndex}).
+ * Primary key (gram, source, student_id) serves the lookup; the student_id index
+ * serves re-indexing and deletes.
+ */
+@Entity
+@Table(name = "student_grams", indexes = @Index(name = "idx_student_grams_student", columnList = "student_id"))
+public class StudentGram {
+
+    public static final byte NAME = 1;
+    public static final byte EMAIL = 2;
+
+    @EmbeddedId
+    private Key id;
+
+    public StudentGram() {
+    }
+
+    public Key getId() {
+        return id;
+    }
+
+    @Embeddable
+    public static class Key implements Serializable {
+        @Column(name = "gram", length = 3, nullable = false)
+        private String gram;
+
+        @Column(name = "source", nullable = false)
+        private byte source;
+
+        @Column(name = "student_id", nullable = false)
+        private Long studentId;
+
+        public Key() {
+        }
+
+        public String getGram() { return gram; }
+        public byte getSource() { return source; }
+        public Long getStudentId() { return studentId; }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key k)) return false;
+            return source == k.source && Objects.equals(gram, k.gram) && Objects.equals(studentId, k.studentId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(gram, source, studentId);
+        }
+    }
+}
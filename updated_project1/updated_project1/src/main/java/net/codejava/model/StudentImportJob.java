@@ -0,0 +1,86 @@
+package net.codejava.model;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * A streaming student import. {@code committedRows} counts input rows (valid or
+ * not) whose chunk has been committed; it advances in the same transaction as the
+ * inserted students, so a resumed job skips exactly that many rows.
+ */
+@Entity
+@Table(name = "student_import_jobs", indexes = {
+        @Index(name = "idx_import_jobs_status", columnList = "status"),
+        @Index(name = "idx_import_jobs_owner", columnList = "owner, created_at")
+})
+public class StudentImportJob {
+
+    // EXPIRED: failed and left unresumed past the retention period; its upload has been deleted
+    public enum Status { QUEUED, RUNNING, COMPLETED, FAILED, EXPIRED }
+
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @Column(nullable = false, length = 100)
+    private String owner;
+
+    @Column(nullable = false, length = 10)
+    private String format;
+
+    @Column(name = "file_path", nullable = false, length = 500)
+    private String filePath;
+
+    // plain VARCHAR as in schema.sql: a native ENUM or CHECK list would not gain new statuses under ddl-auto=update
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, columnDefinition = "varchar(16)")
+    private Status status;
+
+    @Column(name = "committed_rows", nullable = false)
+    private long committedRows;
+
+    @Column(nullable = false)
+    private long created;
+
+    @Column(nullable = false)
+    private long duplicates;
+
+    @Column(nullable = false)
+    private long invalid;
+
+    @Column(length = 500)
+    private String error;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    // heartbeat: bumped with every committed chunk, used to spot jobs orphaned by a crash
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+
+    public StudentImportJob() {
+    }
+
+    public StudentImportJob(String id, String owner, String format, String filePath) {
+        this.id = id;
+        this.owner = owner;
+        this.format = format;
+        this.filePath = filePath;
+        this.status = Status.QUEUED;
+        this.createdAt = Instant.now();
+        this.updatedAt = this.createdAt;
+    }
+
+    public String getId() { return id; }
+    public String getOwner() { return owner; }
+    public String getFormat() { return format; }
+    public String getFilePath() { return filePath; }
+    public Status getStatus() { return status; }
+    public long getCommittedRows() { return committedRows; }
+    public long getCreated() { return created; }
+    public long getDuplicates() { return duplicates; }
+    public long getInvalid() { return invalid; }
+    public String getError() { return error; }
+    public Instant getCreatedAt() { return createdAt; }
+    public Instant getUpdatedAt() { return updatedAt; }
+}
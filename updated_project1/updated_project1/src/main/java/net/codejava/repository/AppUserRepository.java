@@ -1,10 +1,30 @@
 package net.codejava.repository;
 
 import java.util.Optional;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import net.codejava.model.AppUser;
 
 public interface AppUserRepository extends JpaRepository<AppUser, Long> {
+    // roles in the same statement instead of a follow-up select
+    @EntityGraph(attributePaths = "roles")
     Optional<AppUser> findByUsername(String username);
     boolean existsByUsername(String username);
+
+    // page content without the implicit COUNT; totals go through CountService
+    Slice<AppUser> findAllBy(Pageable pageable);
+
+    // compare-and-set, so a background rehash never overwrites a concurrent password change
+    @Transactional
+    @Modifying
+    @Query("update AppUser u set u.password = :newHash where u.username = :username and u.password = :oldHash")
+    int updatePasswordIfUnchanged(@Param("username") String username,
+                                  @Param("oldHash") String oldHash,
+                                  @Param("newHash") String newHash);
 }
@@ -2,9 +2,17 @@ package net.codejava.repository;
 
 import net.codejava.model.RefreshToken;
 import net.codejava.model.AppUser;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Date;
 import java.util.Optional;
 
 @Repository
@@ -13,5 +21,34 @@ public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long
 
     Optional<RefreshToken> findByToken(String token);
 
-    int deleteByUser(AppUser user);
-}
\ No newline at end of file
+    // token + user + roles in one statement
+    @Query("select r from RefreshToken r join fetch r.user u left join fetch u.roles where r.token = :token")
+    Optional<RefreshToken> findWithUserByToken(@Param("token") String token);
+
+    // Rotates in place; 0 rows means unknown or expired. Only one caller can win.
+    @Modifying(clearAutomatically = true)
+    @Query("update RefreshToken r set r.token = :newToken, r.expiryDate = :expiry " +
+            "where r.token = :token and r.expiryDate > :now")
+    int rotate(@Param("token") String token,
+               @Param("newToken") String newToken,
+               @Param("expiry") Date expiry,
+               @Param("now") Date now);
+
+    // Bulk deletes: a single DELETE instead of load-then-remove per entity
+    @Modifying
+    @Query("delete from RefreshToken r where r.user = :user")
+    int deleteByUser(@Param("user") AppUser user);
+
+    @Modifying
+    @Query("delete from RefreshToken r where r.token = :token")
+    int deleteByToken(@Param("token") String token);
+
+    // One bounded chunk, oldest first, in its own short transaction (MySQL DELETE ... LIMIT)
+    // the spaces hint keeps Hibernate from clearing every second-level cache region on each batch
+    @Transactional
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "refresh_tokens"))
+    @Query(value = "DELETE FROM refresh_tokens WHERE expiry_date < :cutoff ORDER BY expiry_date LIMIT :limit",
+            nativeQuery = true)
+    int deleteExpiredBatch(@Param("cutoff") Date cutoff, @Param("limit") int limit);
+}
@@ -0,0 +1,22 @@
+package net.codejava.repository;
+
+/**
+ * Search criteria for students. {@code ownerUsername} null means no owner scoping (admin).
+ */
+public record StudentFilter(String name, String email, Integer minAge, Integer maxAge, String ownerUsername) {
+
+    public boolean isUnfiltered() {
+        return (name == null || name.isBlank()) && (email == null || email.isBlank())
+                && minAge == null && maxAge == null && ownerUsername == null;
+    }
+
+    /** Stable key for filters that select the same rows (text is matched case-insensitively, trimmed). */
+    public String normalizedKey() {
+        return (ownerUsername == null ? "" : ownerUsername) + "|" + text(name) + "|" + text(email) + "|"
+                + (minAge == null ? "" : minAge) + "|" + (maxAge == null ? "" : maxAge);
+    }
+
+    private static String text(String value) {
+        return value == null || value.isBlank() ? "" : value.trim().toLowerCase();
+    }
+}
@@ -0,0 +1,54 @@
+package net.codejava.repository;
+
+import net.codejava.model.StudentImportJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface StudentImportJobRepository extends JpaRepository<StudentImportJob, String> {
+
+    List<StudentImportJob> findByOwnerOrderByCreatedAtDesc(String owner);
+
+    // queued jobs, and running jobs whose heartbeat stopped (the node died mid-import)
+    @Query("select j.id from StudentImportJob j where j.status = net.codejava.model.StudentImportJob.Status.QUEUED "
+            + "or (j.status = net.codejava.model.StudentImportJob.Status.RUNNING and j.updatedAt < :staleBefore)")
+    List<String> findResumable(@Param("staleBefore") Instant staleBefore);
+
+    // compare-and-set claim, so only one node picks a job up
+    @Transactional
+    @Modifying
+    @Query("update StudentImportJob j set j.status = net.codejava.model.StudentImportJob.Status.RUNNING, "
+            + "j.updatedAt = :now, j.error = null where j.id = :id and (j.status <> "
+            + "net.codejava.model.StudentImportJob.Status.RUNNING or j.updatedAt < :staleBefore) "
+            + "and j.status <> net.codejava.model.StudentImportJob.Status.COMPLETED "
+            + "and j.status <> net.codejava.model.StudentImportJob.Status.EXPIRED")
+    int claim(@Param("id") String id, @Param("now") Instant now, @Param("staleBefore") Instant staleBefore);
+
+    @Transactional
+    @Modifying
+    @Query("update StudentImportJob j set j.status = :status, j.error = :error, j.updatedAt = :now where j.id = :id")
+    int finish(@Param("id") String id, @Param("status") StudentImportJob.Status status,
+               @Param("error") String error, @Param("now") Instant now);
+
+    @Transactional
+    @Modifying
+    @Query("update StudentImportJob j set j.status = net.codejava.model.StudentImportJob.Status.QUEUED, "
+            + "j.updatedAt = :now where j.id = :id and j.status = net.codejava.model.StudentImportJob.Status.FAILED")
+    int requeue(@Param("id") String id, @Param("now") Instant now);
+
+    @Query("select j from StudentImportJob j where j.status = net.codejava.model.StudentImportJob.Status.FAILED "
+            + "and j.updatedAt < :before")
+    List<StudentImportJob> findFailedBefore(@Param("before") Instant before);
+
+    // compare-and-set, so a job resumed in the meantime keeps its upload
+    @Transactional
+    @Modifying
+    @Query("update StudentImportJob j set j.status = net.codejava.model.StudentImportJob.Status.EXPIRED, "
+            + "j.updatedAt = :now where j.id = :id and j.status = net.codejava.model.StudentImportJob.Status.FAILED")
+    int expire(@Param("id") String id, @Param("now") Instant now);
+}
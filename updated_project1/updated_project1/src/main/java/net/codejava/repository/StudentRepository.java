@@ -1,13 +1,36 @@
 package net.codejava.repository;
 
+import net.codejava.dto.StudentDTO;
 import net.codejava.model.Student;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 import java.util.Optional;
 
-public interface StudentRepository extends JpaRepository<Student, Long>, JpaSpecificationExecutor<Student> {
+public interface StudentRepository extends JpaRepository<Student, Long>, JpaSpecificationExecutor<Student>,
+        StudentRepositoryCustom {
     List<Student> findByOwner_Username(String username);
     Optional<Student> findByIdAndOwner_Username(Long id, String username);
+    boolean existsByOwner_Id(Long ownerId);
+
+    /* ---- DTO projections: one statement, no entity/owner/roles loading ---- */
+
+    @Query("select new net.codejava.dto.StudentDTO(s.id, s.name, s.email, s.age, o.username) " +
+            "from Student s join s.owner o")
+    List<StudentDTO> findAllDtos();
+
+    @Query("select new net.codejava.dto.StudentDTO(s.id, s.name, s.email, s.age) " +
+            "from Student s where s.owner.username = :username")
+    List<StudentDTO> findDtosByOwner(@Param("username") String username);
+
+    @Query("select new net.codejava.dto.StudentDTO(s.id, s.name, s.email, s.age, o.username) " +
+            "from Student s join s.owner o where s.id = :id")
+    Optional<StudentDTO> findDtoById(@Param("id") Long id);
+
+    @Query("select new net.codejava.dto.StudentDTO(s.id, s.name, s.email, s.age) " +
+            "from Student s where s.id = :id and s.owner.username = :username")
+    Optional<StudentDTO> findDtoByIdAndOwner(@Param("id") Long id, @Param("username") String username);
 }
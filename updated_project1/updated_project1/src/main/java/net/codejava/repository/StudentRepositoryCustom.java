@@ -0,0 +1,45 @@
+package net.codejava.repository;
+
+import net.codejava.dto.StudentDTO;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+public interface StudentRepositoryCustom {
+
+    /**
+     * Filtered page projected straight into DTOs (owner username via join when
+     * {@code includeOwner}), so no Student/AppUser entities are loaded.
+     */
+    Page<StudentDTO> searchDtos(StudentFilter filter, Pageable pageable, boolean includeOwner);
+
+    /**
+     * Same as {@link #searchDtos(StudentFilter, Pageable, boolean)} but the total comes
+     * from {@code total}, which is only called when the page alone cannot tell it.
+     */
+    Page<StudentDTO> searchDtos(StudentFilter filter, Pageable pageable, boolean includeOwner, LongSupplier total);
+
+    long countDtos(StudentFilter filter);
+
+    /**
+     * Keyset page: rows with id below {@code afterId} (or from the top when null),
+     * newest first. Returns a Slice; no count query is run.
+     */
+    Slice<StudentDTO> searchDtosAfter(StudentFilter filter, Long afterId, int size, boolean includeOwner);
+
+    /**
+     * One batch of a filtered delete: selects up to {@code limit} matching ids above
+     * {@code afterId}, then deletes them with the filter's predicates applied again,
+     * so a row that stopped matching in between survives. The filter must not set an owner.
+     */
+    DeletedBatch deleteMatchingBatch(StudentFilter filter, long afterId, int limit);
+
+    /**
+     * @param deleted  deleted ids (ascending) with their owners' usernames
+     * @param lastId   highest id selected, the next batch's {@code afterId}; null when nothing matched
+     */
+    record DeletedBatch(Map<Long, String> deleted, Long lastId) {}
+}
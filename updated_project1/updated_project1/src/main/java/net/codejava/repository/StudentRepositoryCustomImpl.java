@@ -0,0 +1,207 @@
+package net.codejava.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CommonAbstractCriteria;
+import jakarta.persistence.criteria.CompoundSelection;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaDelete;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import net.codejava.dto.StudentDTO;
+import net.codejava.model.AppUser;
+import net.codejava.model.Student;
+import net.codejava.model.StudentGram;
+import net.codejava.util.Trigrams;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+class StudentRepositoryCustomImpl implements StudentRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Value("${app.text-search.enabled:true}")
+    private boolean textIndexEnabled;
+
+    @Override
+    public Page<StudentDTO> searchDtos(StudentFilter filter, Pageable pageable, boolean includeOwner) {
+        return searchDtos(filter, pageable, includeOwner, () -> countDtos(filter));
+    }
+
+    @Override
+    public Page<StudentDTO> searchDtos(StudentFilter filter, Pageable pageable, boolean includeOwner,
+                                       LongSupplier total) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+
+        CriteriaQuery<StudentDTO> q = cb.createQuery(StudentDTO.class);
+        Root<Student> root = q.from(Student.class);
+        Join<Student, AppUser> owner = root.join("owner");
+        q.select(projection(cb, root, owner, includeOwner));
+        q.where(predicates(cb, q, root, owner, filter));
+        if (pageable.getSort().isSorted()) {
+            q.orderBy(QueryUtils.toOrders(pageable.getSort(), root, cb));
+        }
+
+        var query = em.createQuery(q);
+        if (pageable.isPaged()) {
+            query.setFirstResult((int) pageable.getOffset());
+            query.setMaxResults(pageable.getPageSize());
+        }
+        List<StudentDTO> content = query.getResultList();
+
+        // count only runs when the page alone cannot tell the total
+        return PageableExecutionUtils.getPage(content, pageable, total);
+    }
+
+    /*
+     * WHERE ... AND id < :afterId ORDER BY id DESC LIMIT size + 1. With an owner filter
+     * idx_students_user (user_id, id) turns this into a range seek that reads only the
+     * rows returned, however deep the scroll is.
+     */
+    @Override
+    public Slice<StudentDTO> searchDtosAfter(StudentFilter filter, Long afterId, int size, boolean includeOwner) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+
+        CriteriaQuery<StudentDTO> q = cb.createQuery(StudentDTO.class);
+        Root<Student> root = q.from(Student.class);
+        Join<Student, AppUser> owner = root.join("owner");
+        q.select(projection(cb, root, owner, includeOwner));
+
+        List<Predicate> where = new ArrayList<>(List.of(predicates(cb, q, root, owner, filter)));
+        if (afterId != null) {
+            where.add(cb.lessThan(root.get("id"), afterId));
+        }
+        q.where(where.toArray(new Predicate[0]));
+        q.orderBy(cb.desc(root.get("id")));
+
+        // one extra row tells us whether there is a next page
+        List<StudentDTO> rows = em.createQuery(q).setMaxResults(size + 1).getResultList();
+        boolean hasNext = rows.size() > size;
+        List<StudentDTO> content = hasNext ? rows.subList(0, size) : rows;
+        return new SliceImpl<>(content, PageRequest.of(0, size), hasNext);
+    }
+
+    private static CompoundSelection<StudentDTO> projection(CriteriaBuilder cb, Root<Student> root,
+                                                            Join<Student, AppUser> owner, boolean includeOwner) {
+        return includeOwner
+                ? cb.construct(StudentDTO.class,
+                        root.get("id"), root.get("name"), root.get("email"), root.get("age"), owner.get("username"))
+                : cb.construct(StudentDTO.class,
+                        root.get("id"), root.get("name"), root.get("email"), root.get("age"));
+    }
+
+    @Override
+    public long countDtos(StudentFilter filter) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Long> q = cb.createQuery(Long.class);
+        Root<Student> root = q.from(Student.class);
+        Join<Student, AppUser> owner = filter.ownerUsername() != null ? root.join("owner") : null;
+        q.select(cb.count(root)).where(predicates(cb, q, root, owner, filter));
+        return em.createQuery(q).getSingleResult();
+    }
+
+    /*
+     * SELECT id, username ... WHERE <filter> AND id > :afterId ORDER BY id LIMIT :limit walks
+     * the PK, then DELETE ... WHERE id IN (:batch) AND <filter>. Rows the DELETE skipped
+     * (changed by a concurrent write) are looked up by id and left out of the result.
+     */
+    @Override
+    public DeletedBatch deleteMatchingBatch(StudentFilter filter, long afterId, int limit) {
+        if (filter.ownerUsername() != null) {
+            throw new IllegalArgumentException("owner filter is not supported for deletes");
+        }
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+
+        CriteriaQuery<Object[]> q = cb.createQuery(Object[].class);
+        Root<Student> root = q.from(Student.class);
+        Join<Student, AppUser> owner = root.join("owner");
+        List<Predicate> where = new ArrayList<>(List.of(predicates(cb, q, root, owner, filter)));
+        where.add(cb.greaterThan(root.get("id"), afterId));
+        q.multiselect(root.get("id"), owner.get("username"))
+                .where(where.toArray(new Predicate[0]))
+                .orderBy(cb.asc(root.get("id")));
+        Map<Long, String> batch = new LinkedHashMap<>();
+        for (Object[] row : em.createQuery(q).setMaxResults(limit).getResultList()) {
+            batch.put((Long) row[0], (String) row[1]);
+        }
+        if (batch.isEmpty()) return new DeletedBatch(batch, null);
+        Long lastId = batch.keySet().stream().reduce((a, b) -> b).orElseThrow();
+
+        CriteriaDelete<Student> delete = cb.createCriteriaDelete(Student.class);
+        Root<Student> target = delete.from(Student.class);
+        List<Predicate> recheck = new ArrayList<>(List.of(predicates(cb, delete, target, null, filter)));
+        recheck.add(target.get("id").in(batch.keySet()));
+        delete.where(recheck.toArray(new Predicate[0]));
+        if (em.createQuery(delete).executeUpdate() < batch.size()) {
+            em.createQuery("select s.id from Student s where s.id in :ids", Long.class)
+                    .setParameter("ids", batch.keySet())
+                    .getResultList()
+                    .forEach(batch::remove);
+        }
+        return new DeletedBatch(batch, lastId);
+    }
+
+    Predicate[] predicates(CriteriaBuilder cb, CommonAbstractCriteria query, Root<Student> root,
+                           Join<Student, AppUser> owner, StudentFilter filter) {
+        List<Predicate> predicates = new ArrayList<>();
+        if (StringUtils.hasText(filter.name())) {
+            textMatch(cb, query, root, predicates, "name", StudentGram.NAME, filter.name());
+        }
+        if (StringUtils.hasText(filter.email())) {
+            textMatch(cb, query, root, predicates, "email", StudentGram.EMAIL, filter.email());
+        }
+        if (filter.minAge() != null) {
+            predicates.add(cb.greaterThanOrEqualTo(root.get("age"), filter.minAge()));
+        }
+        if (filter.maxAge() != null) {
+            predicates.add(cb.lessThanOrEqualTo(root.get("age"), filter.maxAge()));
+        }
+        if (filter.ownerUsername() != null) {
+            predicates.add(cb.equal(owner.get("username"), filter.ownerUsername()));
+        }
+        return predicates.toArray(new Predicate[0]);
+    }
+
+    /*
+     * LOWER(col) LIKE '%term%' on its own scans the table. With the trigram index on,
+     * candidates are first narrowed to students holding every trigram of the term
+     * (PK range lookups on student_grams); the LIKE then only checks those rows.
+     * Terms shorter than a trigram have nothing to look up and use the LIKE alone, as do
+     * terms with %, _ or \, which the LIKE has always treated as pattern characters
+     * while the grams would treat them literally.
+     */
+    private void textMatch(CriteriaBuilder cb, CommonAbstractCriteria query, Root<Student> root,
+                           List<Predicate> predicates, String attribute, byte source, String term) {
+        Set<String> grams = Trigrams.of(term);
+        if (textIndexEnabled && !grams.isEmpty() && !Trigrams.hasLikeWildcards(term)) {
+            Subquery<Long> candidates = query.subquery(Long.class);
+            Root<StudentGram> g = candidates.from(StudentGram.class);
+            Path<Object> key = g.get("id");
+            candidates.select(key.get("studentId"))
+                    .where(cb.equal(key.get("source"), source), key.get("gram").in(grams))
+                    .groupBy(key.get("studentId"))
+                    .having(cb.equal(cb.countDistinct(key.get("gram")), (long) grams.size()));
+            predicates.add(root.get("id").in(candidates));
+        }
+        predicates.add(cb.like(cb.lower(root.get(attribute)), "%" + term.toLowerCase().trim() + "%"));
+    }
+}
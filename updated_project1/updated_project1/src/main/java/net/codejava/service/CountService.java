@@ -0,0 +1,109 @@
+package net.codejava.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Totals for paged responses. The caller picks how much a total is worth:
+ * <ul>
+ *   <li>{@code exact} - run the COUNT every time (the old behaviour);</li>
+ *   <li>{@code cached} - exact COUNT, reused for a short TTL per normalized filter;</li>
+ *   <li>{@code estimated} - row estimate from table statistics, no scan at all.
+ *       Only meaningful for an unfiltered table, so filtered requests fall back
+ *       to {@code cached}.</li>
+ * </ul>
+ * The mode actually used is returned with the total so responses can report it.
+ */
+@Service
+public class CountService {
+    private static final Logger log = LoggerFactory.getLogger(CountService.class);
+
+    public enum Mode {
+        EXACT, CACHED, ESTIMATED;
+
+        /** @throws IllegalArgumentException for an unknown mode */
+        public static Mode parse(String value) {
+            return value == null || value.isBlank() ? EXACT : valueOf(value.trim().toUpperCase(Locale.ROOT));
+        }
+
+        public String label() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    public record Total(long value, Mode mode) {}
+
+    public record CountedPage<T>(Page<T> page, Mode mode) {}
+
+    private final JdbcTemplate jdbc;
+    private final Cache<String, Long> totals;
+
+    public CountService(JdbcTemplate jdbc,
+                        @Value("${app.count.cache-ttl:30s}") Duration cacheTtl,
+                        @Value("${app.count.cache-max-size:10000}") long cacheMaxSize) {
+        this.jdbc = jdbc;
+        this.totals = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(cacheTtl)
+                .build();
+    }
+
+    /**
+     * @param table    table the total is for; used for statistics and as cache namespace
+     * @param filterKey normalized filter, or null when the query is unfiltered
+     * @param exact    runs the real COUNT
+     */
+    public Total count(String table, String filterKey, Mode mode, LongSupplier exact) {
+        if (mode == Mode.ESTIMATED && filterKey == null) {
+            Long estimate = totals.get("est|" + table, k -> estimate(table));
+            if (estimate != null) return new Total(estimate, Mode.ESTIMATED);
+            mode = Mode.CACHED;
+        } else if (mode == Mode.ESTIMATED) {
+            mode = Mode.CACHED;
+        }
+        if (mode == Mode.CACHED) {
+            String key = table + "|" + (filterKey == null ? "" : filterKey);
+            return new Total(totals.get(key, k -> exact.getAsLong()), Mode.CACHED);
+        }
+        return new Total(exact.getAsLong(), Mode.EXACT);
+    }
+
+    /**
+     * Runs {@code query} with a total supplier backed by {@link #count}. When the page
+     * alone settles the total the supplier is never called and the total is exact.
+     */
+    public <T> CountedPage<T> page(String table, String filterKey, Mode mode, LongSupplier exact,
+                                   Function<LongSupplier, Page<T>> query) {
+        AtomicReference<Mode> used = new AtomicReference<>(Mode.EXACT);
+        Page<T> page = query.apply(() -> {
+            Total t = count(table, filterKey, mode, exact);
+            used.set(t.mode());
+            return t.value();
+        });
+        return new CountedPage<>(page, used.get());
+    }
+
+    // InnoDB keeps a sampled row count per table; null when unavailable (e.g. not MySQL)
+    private Long estimate(String table) {
+        try {
+            return jdbc.queryForObject(
+                    "SELECT TABLE_ROWS FROM information_schema.TABLES WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?",
+                    Long.class, table);
+        } catch (RuntimeException e) {
+            log.debug("No row estimate for {}: {}", table, e.getMessage());
+            return null;
+        }
+    }
+}
@@ -1,37 +1,240 @@
 package net.codejava.service;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.stereotype.Service;
+import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.security.crypto.password.PasswordEncoder;
 
 import net.codejava.repository.AppUserRepository;
 import net.codejava.model.AppUser;
 
 @Service
 public class CustomUserDetailsService implements UserDetailsService {
+    private static final Logger log = LoggerFactory.getLogger(CustomUserDetailsService.class);
+
+    // authorities only; password hashes never leave the process
+    private static final String L2_PREFIX = "users:authorities:";
+    private static final String INVALIDATION_CHANNEL = "users:invalidate";
 
     private final AppUserRepository userRepository;
+    private final StringRedisTemplate redis;
+    private final ObjectMapper mapper;
+    private final PasswordEncoder passwordEncoder;
+
+    // Single background worker for rehash-on-login; overflow is dropped and retried next login
+    private final ThreadPoolExecutor rehashExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(256),
+            r -> {
+                Thread t = new Thread(r, "pwd-rehash");
+                t.setDaemon(true);
+                return t;
+            },
+            new ThreadPoolExecutor.DiscardPolicy());
+
+    /*
+     * L1: bounded in-process cache in front of the users + user_roles lookup.
+     * Entries expire after the TTL; hot entries are reloaded from MySQL in the
+     * background once they are older than refresh-after, so readers never wait.
+     *
+     * L2: authorities in Redis, shared by all nodes so a cold node can serve
+     * token-authenticated requests without MySQL. An L1 entry filled from L2 has
+     * no password; a login that needs it reads MySQL. Evictions are broadcast on
+     * a pub/sub channel and every node drops its L1 entry when the message arrives.
+     */
+    private final LoadingCache<String, CachedUser> cache;
+    private final boolean l2Enabled;
+    private final Duration l2Ttl;
+    private final Counter l2Hits;
+    private final Counter l2Misses;
 
-    public CustomUserDetailsService(AppUserRepository userRepository) {
+    public CustomUserDetailsService(AppUserRepository userRepository,
+                                    StringRedisTemplate redis,
+                                    ObjectMapper mapper,
+                                    PasswordEncoder passwordEncoder,
+                                    RedisMessageListenerContainer listenerContainer,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${app.user-cache.max-size:10000}") long maxSize,
+                                    @Value("${app.user-cache.ttl:5m}") Duration ttl,
+                                    @Value("${app.user-cache.refresh-after:1m}") Duration refreshAfter,
+                                    @Value("${app.user-cache.redis.enabled:true}") boolean l2Enabled,
+                                    @Value("${app.user-cache.redis.ttl:30m}") Duration l2Ttl) {
         this.userRepository = userRepository;
+        this.redis = redis;
+        this.mapper = mapper;
+        this.passwordEncoder = passwordEncoder;
+        this.l2Enabled = l2Enabled;
+        this.l2Ttl = l2Ttl;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .refreshAfterWrite(refreshAfter)
+                .recordStats()
+                .build(new CacheLoader<String, CachedUser>() {
+                    @Override
+                    public CachedUser load(String username) {
+                        return CustomUserDetailsService.this.load(username);
+                    }
+
+                    // refresh-ahead goes to MySQL; re-reading L2 would let its longer TTL outlive ours
+                    @Override
+                    public CachedUser reload(String username, CachedUser old) {
+                        return loadFromDatabase(username);
+                    }
+                });
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "users");
+        this.l2Hits = Counter.builder("users.cache.l2").tag("result", "hit").register(meterRegistry);
+        this.l2Misses = Counter.builder("users.cache.l2").tag("result", "miss").register(meterRegistry);
+
+        // Invalidation from any node (including this one) drops the local entry
+        listenerContainer.addMessageListener(
+                (message, pattern) -> cache.invalidate(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(INVALIDATION_CHANNEL));
     }
 
+    /** Full principal including the password hash, as needed by the login path. */
     @Override
-    @Transactional(readOnly = true)
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+        // A fresh User each time: ProviderManager erases credentials on the returned principal
+        return withPassword(username).toUserDetails();
+    }
+
+    /** Principal for token-authenticated requests; the password is not needed and may not be cached. */
+    public UserDetails loadPrincipal(String username) throws UsernameNotFoundException {
+        return cache.get(username).toUserDetails();
+    }
+
+    /**
+     * Drops the entry everywhere: local L1, the shared Redis copy, and (via pub/sub)
+     * the L1 of every other node. Call after signup, role changes and user deletion.
+     */
+    public void evict(String username) {
+        cache.invalidate(username);
+        if (!l2Enabled) return;
+        // callers have already committed; other nodes catch up when their L1 entry refreshes from MySQL
+        try {
+            redis.delete(L2_PREFIX + username);
+            redis.convertAndSend(INVALIDATION_CHANNEL, username);
+        } catch (RuntimeException e) {
+            log.warn("Could not evict cached principal for {}: {}", username, e.getMessage());
+        }
+    }
+
+    /**
+     * Called after a successful login. When the stored hash uses an old format or
+     * a cost that no longer matches the calibrated target, the password is rehashed
+     * and written back off the request thread.
+     */
+    public void rehashIfNeeded(String username, String rawPassword) {
+        String stored = withPassword(username).password();
+        if (stored == null || !passwordEncoder.upgradeEncoding(stored)) return;
+        rehashExecutor.execute(() -> {
+            try {
+                String fresh = passwordEncoder.encode(rawPassword);
+                if (userRepository.updatePasswordIfUnchanged(username, stored, fresh) > 0) {
+                    evict(username);
+                }
+            } catch (RuntimeException e) {
+                log.warn("Background rehash for {} failed: {}", username, e.getMessage());
+            }
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        rehashExecutor.shutdown();
+    }
+
+    /* -------------------- loading -------------------- */
+
+    private CachedUser withPassword(String username) {
+        CachedUser user = cache.get(username);
+        if (user.password() == null) {
+            user = loadFromDatabase(username);
+            cache.put(username, user);
+        }
+        return user;
+    }
+
+    private CachedUser load(String username) {
+        if (!l2Enabled) {
+            return loadFromDatabase(username);
+        }
+        CachedUser shared = readL2(username);
+        if (shared != null) {
+            l2Hits.increment();
+            return shared;
+        }
+        l2Misses.increment();
+        return loadFromDatabase(username);
+    }
+
+    private CachedUser loadFromDatabase(String username) {
         AppUser user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found: " + username));
 
-        return org.springframework.security.core.userdetails.User
-                .withUsername(user.getUsername())
-                .password(user.getPassword())
-                .authorities(user.getRoles().stream()
-                        .map(r -> new SimpleGrantedAuthority("ROLE_" + r))
-                        .collect(Collectors.toList()))
-                .build();
+        CachedUser loaded = new CachedUser(user.getUsername(), user.getPassword(),
+                user.getRoles().stream().map(r -> "ROLE_" + r).collect(Collectors.toList()));
+        if (l2Enabled) writeL2(loaded);
+        return loaded;
+    }
+
+    // Redis problems degrade to a MySQL lookup rather than failing authentication
+    private CachedUser readL2(String username) {
+        try {
+            String json = redis.opsForValue().get(L2_PREFIX + username);
+            if (json == null) return null;
+            CachedAuthorities a = mapper.readValue(json, CachedAuthorities.class);
+            return new CachedUser(a.username(), null, a.authorities());
+        } catch (Exception e) {
+            log.warn("Could not read cached principal for {}: {}", username, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeL2(CachedUser user) {
+        try {
+            String json = mapper.writeValueAsString(new CachedAuthorities(user.username(), user.authorities()));
+            redis.opsForValue().set(L2_PREFIX + user.username(), json, l2Ttl);
+        } catch (JsonProcessingException | RuntimeException e) {
+            log.warn("Could not cache principal for {}: {}", user.username(), e.getMessage());
+        }
     }
+
+    // password is null when the entry came from L2
+    private record CachedUser(String username, String password, List<String> authorities) {
+
+        UserDetails toUserDetails() {
+            return User.withUsername(username)
+                    .password(password != null ? password : "")
+                    .authorities(authorities.toArray(String[]::new))
+                    .build();
+        }
+    }
+
+    record CachedAuthorities(String username, List<String> authorities) {}
 }
@@ -0,0 +1,117 @@
+package net.codejava.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import net.codejava.model.AppUser;
+import net.codejava.model.Student;
+import net.codejava.util.AfterCommit;
+import org.hibernate.SessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Second-level cache evictions that every node sees. With provider=local each node
+ * has its own regions, and Hibernate (or an explicit evict after a JDBC write) only
+ * updates the regions of the node that made the change. Writers therefore call
+ * {@link #evictStudents} / {@link #evictUser}: after commit the entries are dropped
+ * locally and the ids are published on l2:evict, where every other node drops them
+ * too. With provider=redis the regions are shared and the local eviction is enough.
+ *
+ * A node that misses a message (Redis outage) serves the stale entry until it
+ * expires after app.l2-cache.ttl.
+ */
+@Service
+public class EntityCacheSync {
+    private static final Logger log = LoggerFactory.getLogger(EntityCacheSync.class);
+
+    private static final String CHANNEL = "l2:evict";
+    private static final String STUDENTS = "students";
+    private static final String USERS = "users";
+    private static final String USER_ROLES = AppUser.class.getName() + ".roles";
+
+    private final EntityManagerFactory emf;
+    private final StringRedisTemplate redis;
+    private final boolean broadcast;
+
+    public EntityCacheSync(EntityManagerFactory emf,
+                           StringRedisTemplate redis,
+                           RedisMessageListenerContainer listenerContainer,
+                           @Value("${app.l2-cache.enabled:true}") boolean enabled,
+                           @Value("${app.l2-cache.provider:local}") String provider) {
+        this.emf = emf;
+        this.redis = redis;
+        this.broadcast = enabled && !"redis".equals(provider);
+        if (broadcast) {
+            listenerContainer.addMessageListener(
+                    (message, pattern) -> onEvict(new String(message.getBody(), StandardCharsets.UTF_8)),
+                    new ChannelTopic(CHANNEL));
+        }
+    }
+
+    /** Drops these students everywhere once the surrounding transaction commits. */
+    public void evictStudents(Collection<Long> ids) {
+        if (ids.isEmpty()) return;
+        List<Long> evict = List.copyOf(ids);
+        AfterCommit.run(() -> {
+            evictLocal(STUDENTS, evict);
+            publish(STUDENTS, evict);
+        });
+    }
+
+    /** Drops the user and its roles collection everywhere once the surrounding transaction commits. */
+    public void evictUser(Long id) {
+        List<Long> evict = List.of(id);
+        AfterCommit.run(() -> {
+            evictLocal(USERS, evict);
+            publish(USERS, evict);
+        });
+    }
+
+    static String message(String region, Collection<Long> ids) {
+        return region + ":" + ids.stream().map(String::valueOf).collect(Collectors.joining(","));
+    }
+
+    private void publish(String region, List<Long> ids) {
+        if (!broadcast) return;
+        try {
+            redis.convertAndSend(CHANNEL, message(region, ids));
+        } catch (RuntimeException e) {
+            // other nodes keep the entries until they expire
+            log.warn("Could not broadcast {} cache eviction: {}", region, e.getMessage());
+        }
+    }
+
+    private void onEvict(String payload) {
+        int sep = payload.indexOf(':');
+        if (sep <= 0) return;
+        try {
+            List<Long> ids = Arrays.stream(payload.substring(sep + 1).split(",")).map(Long::valueOf).toList();
+            evictLocal(payload.substring(0, sep), ids);
+        } catch (RuntimeException e) {
+            log.warn("Could not apply cache eviction {}: {}", payload, e.getMessage());
+        }
+    }
+
+    private void evictLocal(String region, List<Long> ids) {
+        if (STUDENTS.equals(region)) {
+            ids.forEach(id -> emf.getCache().evict(Student.class, id));
+        } else if (USERS.equals(region)) {
+            // roles are a separate collection region, keyed by the owning user's id
+            org.hibernate.Cache cache = emf.unwrap(SessionFactory.class).getCache();
+            for (Long id : ids) {
+                cache.evictEntityData(AppUser.class, id);
+                cache.evictCollectionData(USER_ROLES, id);
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package net.codejava.service;
+
+import net.codejava.model.AppUser;
+import net.codejava.model.RefreshToken;
+import net.codejava.repository.AppUserRepository;
+import net.codejava.repository.RefreshTokenRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+import java.util.Optional;
+import java.util.UUID;
+
+
+@Service
+@Transactional
+@ConditionalOnProperty(name = "app.refresh-store", havingValue = "jpa", matchIfMissing = true)
+public class JpaRefreshTokenService implements RefreshTokenService {
+
+    private final RefreshTokenRepository tokenRepository;
+    private final AppUserRepository userRepository;
+
+
+    private final long refreshExpirationMs;
+
+    public JpaRefreshTokenService(RefreshTokenRepository tokenRepository,
+                                  AppUserRepository userRepository,
+                                  @Value("${app.refresh-expiration-ms:604800000}") long refreshExpirationMs) {
+        this.tokenRepository = tokenRepository;
+        this.userRepository = userRepository;
+        this.refreshExpirationMs = refreshExpirationMs;
+    }
+
+
+    @Override
+    public RefreshToken createRefreshToken(String username) {
+        AppUser user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new IllegalArgumentException("Cannot find user: " + username));
+        // Remove any existing refresh tokens to enforce one active token per user
+        tokenRepository.deleteByUser(user);
+
+        RefreshToken refreshToken = new RefreshToken();
+        refreshToken.setUser(user);
+        refreshToken.setExpiryDate(new Date(System.currentTimeMillis() + refreshExpirationMs));
+        refreshToken.setToken(UUID.randomUUID().toString());
+        return tokenRepository.save(refreshToken);
+    }
+
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<RefreshToken> findByToken(String token) {
+        return tokenRepository.findWithUserByToken(token);
+    }
+
+
+    @Override
+    public boolean verifyExpiration(RefreshToken token) {
+        if (token.getExpiryDate().before(new Date())) {
+            tokenRepository.delete(token);
+            return false;
+        }
+        return true;
+    }
+
+
+    /*
+     * Two statements: an in-place UPDATE of token + expiry (the row count tells us
+     * whether the old token was valid) and one fetch-joined SELECT for the user and
+     * roles. Updating the row keeps the one-token-per-user invariant without a
+     * delete + insert. Expired rows that fail here are left to the purger.
+     */
+    @Override
+    public Optional<RefreshToken> rotate(String token) {
+        String newToken = UUID.randomUUID().toString();
+        Date now = new Date();
+        Date expiry = new Date(now.getTime() + refreshExpirationMs);
+        if (tokenRepository.rotate(token, newToken, expiry, now) == 0) {
+            return Optional.empty();
+        }
+        return tokenRepository.findWithUserByToken(newToken);
+    }
+
+
+    @Override
+    public void deleteTokensByUser(AppUser user) {
+        tokenRepository.deleteByUser(user);
+    }
+
+
+    @Override
+    public void deleteByToken(String token) {
+        tokenRepository.deleteByToken(token);
+    }
+}
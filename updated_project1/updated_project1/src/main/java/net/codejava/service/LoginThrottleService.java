@@ -0,0 +1,323 @@
+package net.codejava.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Brute-force / credential-stuffing throttle for /authenticate, checked before any
+ * BCrypt work is done.
+ *
+ * Failures are counted per username and per client IP in Redis sliding windows
+ * (two fixed windows weighted by overlap). To keep Redis off the login path,
+ * failures are pre-aggregated locally and flushed in the background, as are the
+ * counter resets after a successful login; a key that
+ * crosses its threshold gets a block whose length doubles with each repeat
+ * offence. Blocks are broadcast over pub/sub, so {@link #check} only ever looks
+ * at local state.
+ *
+ * The per-IP dimension needs the real client address. Behind a load balancer
+ * getRemoteAddr() is the balancer for everyone, so it is off by default
+ * (app.login-throttle.client-ip=none); "forwarded" reads X-Forwarded-For, but only
+ * from requests arriving through one of app.login-throttle.trusted-proxies.
+ */
+@Service
+public class LoginThrottleService {
+    private static final Logger log = LoggerFactory.getLogger(LoginThrottleService.class);
+
+    private static final String COUNT_PREFIX = "lt:c:";
+    private static final String BLOCK_PREFIX = "lt:block:";
+    private static final String STRIKES_PREFIX = "lt:strikes:";
+    private static final String CHANNEL = "auth:throttle";
+
+    // KEYS[1] = current window, KEYS[2] = previous window; ARGV[1] = increment, ARGV[2] = ttl ms
+    // (a class literal cannot name List<Long>, hence the cast; Redis integer replies come back as Long)
+    @SuppressWarnings("unchecked")
+    private static final RedisScript<List<Long>> ADD = new DefaultRedisScript<>("""
+            local cur = redis.call('INCRBY', KEYS[1], ARGV[1])
+            redis.call('PEXPIRE', KEYS[1], ARGV[2])
+            local prev = tonumber(redis.call('GET', KEYS[2]) or '0')
+            return {cur, prev}
+            """, (Class<List<Long>>) (Class<?>) List.class);
+
+    public record Decision(boolean allowed, long retryAfterSeconds) {
+        static final Decision ALLOW = new Decision(true, 0);
+    }
+
+    public record Block(String key, long remainingSeconds) {}
+
+    public enum ClientIp { NONE, REMOTE, FORWARDED }
+
+    private final StringRedisTemplate redis;
+    private final boolean enabled;
+    private final Duration window;
+    private final int maxPerUsername;
+    private final int maxPerIp;
+    private final Duration baseBlock;
+    private final Duration maxBlock;
+    private final ClientIp clientIpMode;
+    private final Set<String> trustedProxies;
+
+    private final ConcurrentHashMap<String, AtomicLong> pending = new ConcurrentHashMap<>();
+    private final Set<String> resets = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<String, Long> blockedUntil = new ConcurrentHashMap<>();
+    private final Counter rejected;
+    // threshold crossings hand the flush to this thread instead of running it on the login request
+    private final ExecutorService flusher = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "login-throttle-flush");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
+
+    public LoginThrottleService(StringRedisTemplate redis,
+                                RedisMessageListenerContainer listenerContainer,
+                                MeterRegistry meterRegistry,
+                                @Value("${app.login-throttle.enabled:true}") boolean enabled,
+                                @Value("${app.login-throttle.window:5m}") Duration window,
+                                @Value("${app.login-throttle.max-failures-per-username:10}") int maxPerUsername,
+                                @Value("${app.login-throttle.max-failures-per-ip:50}") int maxPerIp,
+                                @Value("${app.login-throttle.base-block:30s}") Duration baseBlock,
+                                @Value("${app.login-throttle.max-block:1h}") Duration maxBlock,
+                                @Value("${app.login-throttle.client-ip:none}") String clientIp,
+                                @Value("${app.login-throttle.trusted-proxies:}") List<String> trustedProxies) {
+        this.redis = redis;
+        this.enabled = enabled;
+        this.window = window;
+        this.maxPerUsername = maxPerUsername;
+        this.maxPerIp = maxPerIp;
+        this.baseBlock = baseBlock;
+        this.maxBlock = maxBlock;
+        this.clientIpMode = ClientIp.valueOf(clientIp.trim().toUpperCase());
+        this.trustedProxies = Set.copyOf(trustedProxies.stream().map(String::trim).filter(p -> !p.isEmpty()).toList());
+        this.rejected = Counter.builder("login.throttle.rejected").register(meterRegistry);
+
+        listenerContainer.addMessageListener(
+                (message, pattern) -> onBlockMessage(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(CHANNEL));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flusher.shutdown();
+    }
+
+    /* -------------------- login path (local only) -------------------- */
+
+    /** Client address for the per-IP dimension, or null when it cannot be trusted. */
+    public String clientIp(HttpServletRequest request) {
+        String remote = request.getRemoteAddr();
+        return switch (clientIpMode) {
+            case NONE -> null;
+            case REMOTE -> remote;
+            case FORWARDED -> {
+                if (!trustedProxies.contains(remote)) yield remote;
+                // right to left: the first hop not added by one of our proxies is the client
+                String header = request.getHeader("X-Forwarded-For");
+                if (header == null) yield null;
+                String[] hops = header.split(",");
+                for (int i = hops.length - 1; i >= 0; i--) {
+                    String hop = hops[i].trim();
+                    if (!hop.isEmpty() && !trustedProxies.contains(hop)) yield hop;
+                }
+                yield null;
+            }
+        };
+    }
+
+    /** @param ip from {@link #clientIp}; null skips the per-IP dimension */
+    public Decision check(String username, String ip) {
+        if (!enabled) return Decision.ALLOW;
+        long now = System.currentTimeMillis();
+        long until = Math.max(blockedUntil.getOrDefault(userKey(username), 0L),
+                ip != null ? blockedUntil.getOrDefault(ipKey(ip), 0L) : 0L);
+        if (until > now) {
+            rejected.increment();
+            return new Decision(false, Math.max(1, (until - now + 999) / 1000));
+        }
+        return Decision.ALLOW;
+    }
+
+    public void recordFailure(String username, String ip) {
+        if (!enabled) return;
+        addPending(userKey(username), maxPerUsername);
+        if (ip != null) addPending(ipKey(ip), maxPerIp);
+    }
+
+    public void recordSuccess(String username) {
+        if (!enabled) return;
+        String key = userKey(username);
+        pending.remove(key);
+        resets.add(key);
+    }
+
+    // a single node seeing the whole burst flushes right away instead of waiting for the next tick
+    private void addPending(String key, int threshold) {
+        long local = pending.computeIfAbsent(key, k -> new AtomicLong()).incrementAndGet();
+        if (local >= threshold && flushQueued.compareAndSet(false, true)) {
+            flusher.execute(() -> {
+                flushQueued.set(false);
+                flush();
+            });
+        }
+    }
+
+    /* -------------------- background sync -------------------- */
+
+    @Scheduled(fixedDelayString = "${app.login-throttle.flush-interval:500ms}")
+    public synchronized void flush() {
+        if (!enabled || (pending.isEmpty() && resets.isEmpty())) return;
+        long windowMs = window.toMillis();
+        long now = System.currentTimeMillis();
+        long idx = now / windowMs;
+        double prevWeight = 1.0 - (double) (now % windowMs) / windowMs;
+
+        // resets first: failures still pending for a key were recorded after its successful login
+        List<String> resetKeys = new ArrayList<>();
+        for (String key : new ArrayList<>(resets)) {
+            resets.remove(key);
+            resetKeys.add(COUNT_PREFIX + key + ":" + idx);
+            resetKeys.add(COUNT_PREFIX + key + ":" + (idx - 1));
+        }
+        if (!resetKeys.isEmpty()) {
+            try {
+                redis.delete(resetKeys);
+            } catch (RuntimeException e) {
+                // the counters age out with the window; the logins themselves have succeeded
+                log.warn("Could not reset login failures for {} keys: {}", resetKeys.size() / 2, e.getMessage());
+            }
+        }
+
+        for (Map.Entry<String, AtomicLong> e : new ArrayList<>(pending.entrySet())) {
+            long n = e.getValue().getAndSet(0);
+            pending.computeIfPresent(e.getKey(), (k, v) -> v.get() == 0 ? null : v);
+            if (n == 0) continue;
+            String key = e.getKey();
+            try {
+                List<Long> r = redis.execute(ADD,
+                        List.of(COUNT_PREFIX + key + ":" + idx, COUNT_PREFIX + key + ":" + (idx - 1)),
+                        Long.toString(n), Long.toString(windowMs * 2));
+                long cur = r.get(0);
+                long prev = r.get(1);
+                if (cur + prev * prevWeight >= thresholdFor(key)) {
+                    block(key);
+                }
+            } catch (RuntimeException ex) {
+                log.warn("Login throttle flush failed for {}: {}", key, ex.getMessage());
+            }
+        }
+    }
+
+    // progressive backoff: base * 2^(strikes-1), capped at max-block
+    private void block(String key) {
+        Long strikes = redis.opsForValue().increment(STRIKES_PREFIX + key);
+        redis.expire(STRIKES_PREFIX + key, Duration.ofDays(1));
+        int shift = (int) Math.min(20, Math.max(0, (strikes != null ? strikes : 1) - 1));
+        long blockMs = Math.min(maxBlock.toMillis(), baseBlock.toMillis() << shift);
+        long until = System.currentTimeMillis() + blockMs;
+
+        redis.opsForValue().set(BLOCK_PREFIX + key, Long.toString(until), Duration.ofMillis(blockMs));
+        blockedUntil.merge(key, until, Math::max);
+        redis.convertAndSend(CHANNEL, key + "|" + until);
+        // window counters start over once the block is in place
+        long idx = System.currentTimeMillis() / window.toMillis();
+        redis.delete(List.of(COUNT_PREFIX + key + ":" + idx, COUNT_PREFIX + key + ":" + (idx - 1)));
+        log.info("Login throttled for {} ({} ms)", key, blockMs);
+    }
+
+    private void onBlockMessage(String payload) {
+        int sep = payload.lastIndexOf('|');
+        if (sep <= 0) return;
+        String key = payload.substring(0, sep);
+        String until = payload.substring(sep + 1);
+        if (until.isEmpty()) {
+            blockedUntil.remove(key);   // admin unblock
+            return;
+        }
+        try {
+            blockedUntil.merge(key, Long.parseLong(until), Math::max);
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring malformed throttle message: {}", payload);
+        }
+    }
+
+    // picks up blocks made while this node was down or disconnected, and drops expired ones
+    @Scheduled(initialDelay = 0, fixedDelayString = "${app.login-throttle.resync-interval:60s}")
+    public void resync() {
+        if (!enabled) return;
+        long now = System.currentTimeMillis();
+        blockedUntil.values().removeIf(until -> until <= now);
+        try {
+            for (Block b : activeBlocks()) {
+                blockedUntil.merge(b.key(), now + b.remainingSeconds() * 1000, Math::max);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Login throttle resync failed: {}", e.getMessage());
+        }
+    }
+
+    /* -------------------- admin -------------------- */
+
+    public List<Block> activeBlocks() {
+        List<Block> blocks = new ArrayList<>();
+        ScanOptions options = ScanOptions.scanOptions().match(BLOCK_PREFIX + "*").count(1000).build();
+        try (Cursor<String> cursor = redis.scan(options)) {
+            while (cursor.hasNext()) {
+                String redisKey = cursor.next();
+                Long ttl = redis.getExpire(redisKey, TimeUnit.SECONDS);
+                if (ttl != null && ttl > 0) {
+                    blocks.add(new Block(redisKey.substring(BLOCK_PREFIX.length()), ttl));
+                }
+            }
+        }
+        return blocks;
+    }
+
+    public boolean unblock(String key) {
+        Boolean removed = redis.delete(BLOCK_PREFIX + key);
+        redis.delete(STRIKES_PREFIX + key);
+        blockedUntil.remove(key);
+        redis.convertAndSend(CHANNEL, key + "|");
+        return removed != null && removed;
+    }
+
+    /* -------------------- keys -------------------- */
+
+    private int thresholdFor(String key) {
+        return key.startsWith("ip:") ? maxPerIp : maxPerUsername;
+    }
+
+    private static String userKey(String username) {
+        return "u:" + (username == null ? "" : username.trim().toLowerCase());
+    }
+
+    private static String ipKey(String ip) {
+        return "ip:" + ip;
+    }
+}
@@ -0,0 +1,174 @@
+package net.codejava.service;
+
+import net.codejava.model.AppUser;
+import net.codejava.model.RefreshToken;
+import net.codejava.repository.AppUserRepository;
+import net.codejava.util.TokenHashing;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Refresh tokens in Redis instead of MySQL. Expiry is native key TTL, so there is
+ * nothing to purge.
+ *
+ * Layout:
+ *   rt:token:&lt;sha256(token)&gt;  -> "userId|username"   (PX = app.refresh-expiration-ms)
+ *   rt:user:&lt;username&gt;        -> set of token hashes (per-user index)
+ *
+ * Only the hash is stored, so a Redis dump does not leak usable tokens. Issue and
+ * rotate run as Lua scripts so "drop the user's old tokens, store the new one"
+ * is atomic. The scripts build the index key from the stored value, so this
+ * expects a standalone (non-cluster) Redis like the one already configured.
+ */
+@Service
+@ConditionalOnProperty(name = "app.refresh-store", havingValue = "redis")
+public class RedisRefreshTokenService implements RefreshTokenService {
+
+    private static final String TOKEN_PREFIX = "rt:token:";
+    private static final String USER_PREFIX = "rt:user:";
+
+    // KEYS[1] = user index; ARGV[1] = new token hash, ARGV[2] = value, ARGV[3] = ttl ms
+    private static final RedisScript<Long> ISSUE = new DefaultRedisScript<>("""
+            for _, h in ipairs(redis.call('SMEMBERS', KEYS[1])) do
+              redis.call('DEL', 'rt:token:' .. h)
+            end
+            redis.call('DEL', KEYS[1])
+            redis.call('SET', 'rt:token:' .. ARGV[1], ARGV[2], 'PX', ARGV[3])
+            redis.call('SADD', KEYS[1], ARGV[1])
+            redis.call('PEXPIRE', KEYS[1], ARGV[3])
+            return 1
+            """, Long.class);
+
+    // KEYS[1] = old token key; ARGV[1] = new token hash, ARGV[2] = ttl ms
+    // Returns the stored "userId|username" of the old token, or nil if it is gone.
+    private static final RedisScript<String> ROTATE = new DefaultRedisScript<>("""
+            local v = redis.call('GET', KEYS[1])
+            if not v then return false end
+            local username = string.sub(v, string.find(v, '|', 1, true) + 1)
+            local idx = 'rt:user:' .. username
+            for _, h in ipairs(redis.call('SMEMBERS', idx)) do
+              redis.call('DEL', 'rt:token:' .. h)
+            end
+            redis.call('DEL', idx, KEYS[1])
+            redis.call('SET', 'rt:token:' .. ARGV[1], v, 'PX', ARGV[2])
+            redis.call('SADD', idx, ARGV[1])
+            redis.call('PEXPIRE', idx, ARGV[2])
+            return v
+            """, String.class);
+
+    private final StringRedisTemplate redis;
+    private final AppUserRepository userRepository;
+    private final long refreshExpirationMs;
+
+    public RedisRefreshTokenService(StringRedisTemplate redis,
+                                    AppUserRepository userRepository,
+                                    @Value("${app.refresh-expiration-ms:604800000}") long refreshExpirationMs) {
+        this.redis = redis;
+        this.userRepository = userRepository;
+        this.refreshExpirationMs = refreshExpirationMs;
+    }
+
+
+    @Override
+    public RefreshToken createRefreshToken(String username) {
+        AppUser user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new IllegalArgumentException("Cannot find user: " + username));
+        String token = UUID.randomUUID().toString();
+        redis.execute(ISSUE, List.of(USER_PREFIX + username),
+                hash(token), user.getId() + "|" + username, Long.toString(refreshExpirationMs));
+        return toRefreshToken(token, user, refreshExpirationMs);
+    }
+
+
+    @Override
+    public Optional<RefreshToken> findByToken(String token) {
+        String key = TOKEN_PREFIX + hash(token);
+        String value = redis.opsForValue().get(key);
+        if (value == null) return Optional.empty();
+        Long ttlMs = redis.getExpire(key, TimeUnit.MILLISECONDS);
+        return Optional.of(toRefreshToken(token, stubUser(value), ttlMs != null ? ttlMs : 0L));
+    }
+
+
+    // Expired keys are already gone in Redis; this only catches the last few milliseconds
+    @Override
+    public boolean verifyExpiration(RefreshToken token) {
+        if (token.getExpiryDate().before(new Date())) {
+            deleteByToken(token.getToken());
+            return false;
+        }
+        return true;
+    }
+
+
+    @Override
+    public Optional<RefreshToken> rotate(String token) {
+        String newToken = UUID.randomUUID().toString();
+        String value = redis.execute(ROTATE, List.of(TOKEN_PREFIX + hash(token)),
+                hash(newToken), Long.toString(refreshExpirationMs));
+        if (value == null) return Optional.empty();
+        // roles/id are needed for the access token; this is a read, not a write
+        String username = stubUser(value).getUsername();
+        AppUser user = userRepository.findByUsername(username).orElse(null);
+        if (user == null) {
+            deleteByToken(newToken);
+            return Optional.empty();
+        }
+        return Optional.of(toRefreshToken(newToken, user, refreshExpirationMs));
+    }
+
+
+    @Override
+    public void deleteTokensByUser(AppUser user) {
+        String idx = USER_PREFIX + user.getUsername();
+        Set<String> hashes = redis.opsForSet().members(idx);
+        if (hashes != null && !hashes.isEmpty()) {
+            redis.delete(hashes.stream().map(h -> TOKEN_PREFIX + h).toList());
+        }
+        redis.delete(idx);
+    }
+
+
+    @Override
+    public void deleteByToken(String token) {
+        String h = hash(token);
+        String value = redis.opsForValue().getAndDelete(TOKEN_PREFIX + h);
+        if (value != null) {
+            redis.opsForSet().remove(USER_PREFIX + stubUser(value).getUsername(), h);
+        }
+    }
+
+    /* -------------------- helpers -------------------- */
+
+    private static RefreshToken toRefreshToken(String token, AppUser user, long ttlMs) {
+        RefreshToken rt = new RefreshToken();
+        rt.setToken(token);
+        rt.setUser(user);
+        rt.setExpiryDate(new Date(System.currentTimeMillis() + ttlMs));
+        return rt;
+    }
+
+    // "userId|username" -> detached AppUser carrying just id and username
+    private static AppUser stubUser(String value) {
+        int sep = value.indexOf('|');
+        AppUser user = new AppUser();
+        user.setId(Long.valueOf(value.substring(0, sep)));
+        user.setUsername(value.substring(sep + 1));
+        return user;
+    }
+
+    private static String hash(String token) {
+        return TokenHashing.sha256Hex(token);
+    }
+}
@@ -0,0 +1,178 @@
+package net.codejava.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import net.codejava.util.TokenHashing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent /refresh calls that present the same refresh token (several
+ * tabs waking up at once). One caller performs the rotation; everyone else who
+ * shows up with the same old token within the grace window gets the identical
+ * access/refresh pair instead of a 403 or a second rotation.
+ *
+ * Single node: an in-flight future per token plus a short-lived result cache.
+ * Across nodes: a Redis NX lock picks the rotating node and the result is parked
+ * in Redis for the grace window. The parked result is AES-GCM encrypted with a key
+ * derived from the old token, so only a holder of that token can read it.
+ */
+@Service
+public class RefreshCoalescer {
+    private static final Logger log = LoggerFactory.getLogger(RefreshCoalescer.class);
+
+    private static final String LOCK_PREFIX = "rt:lock:";
+    private static final String RESULT_PREFIX = "rt:grace:";
+    private static final long POLL_MS = 50;
+
+    public record RefreshOutcome(String accessToken, String refreshToken, long refreshExpiresAt) {}
+
+    private final StringRedisTemplate redis;
+    private final boolean enabled;
+    private final Duration grace;
+    private final Duration wait;
+    private final ConcurrentHashMap<String, CompletableFuture<Optional<RefreshOutcome>>> inFlight = new ConcurrentHashMap<>();
+    private final Cache<String, RefreshOutcome> recent;
+    private final SecureRandom random = new SecureRandom();
+
+    public RefreshCoalescer(StringRedisTemplate redis,
+                            @Value("${app.refresh-coalesce.enabled:true}") boolean enabled,
+                            @Value("${app.refresh-coalesce.grace:10s}") Duration grace,
+                            @Value("${app.refresh-coalesce.wait:3s}") Duration wait) {
+        this.redis = redis;
+        this.enabled = enabled;
+        this.grace = grace;
+        this.wait = wait;
+        this.recent = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(grace)
+                .build();
+    }
+
+    /**
+     * Runs {@code rotation} at most once per old token within the grace window and
+     * hands its result to every concurrent or slightly late caller.
+     */
+    public Optional<RefreshOutcome> refresh(String oldToken, Supplier<Optional<RefreshOutcome>> rotation) {
+        if (!enabled) return rotation.get();
+
+        String id = TokenHashing.sha256Hex(oldToken);
+        RefreshOutcome cached = recent.getIfPresent(id);
+        if (cached != null) return Optional.of(cached);
+
+        CompletableFuture<Optional<RefreshOutcome>> mine = new CompletableFuture<>();
+        CompletableFuture<Optional<RefreshOutcome>> existing = inFlight.putIfAbsent(id, mine);
+        if (existing != null) {
+            return existing.join();
+        }
+        try {
+            Optional<RefreshOutcome> result = rotateOnce(id, oldToken, rotation);
+            result.ifPresent(r -> recent.put(id, r));
+            mine.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(id, mine);
+        }
+    }
+
+    /* -------------------- cross-node -------------------- */
+
+    private Optional<RefreshOutcome> rotateOnce(String id, String oldToken,
+                                                Supplier<Optional<RefreshOutcome>> rotation) {
+        Optional<RefreshOutcome> parked = readParked(id, oldToken);
+        if (parked.isPresent()) return parked;
+
+        Boolean locked;
+        try {
+            locked = redis.opsForValue().setIfAbsent(LOCK_PREFIX + id, "1", wait);
+        } catch (RuntimeException e) {
+            // Redis unavailable: still coalesced on this node, just not across nodes
+            log.warn("Refresh lock unavailable: {}", e.getMessage());
+            return rotation.get();
+        }
+        if (Boolean.TRUE.equals(locked)) {
+            Optional<RefreshOutcome> result = rotation.get();
+            result.ifPresent(r -> park(id, oldToken, r));
+            // lock expires on its own; leaving it avoids a second rotation racing the parked result
+            return result;
+        }
+
+        // another node is rotating this token: wait for its result
+        long deadline = System.currentTimeMillis() + wait.toMillis();
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(POLL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            parked = readParked(id, oldToken);
+            if (parked.isPresent()) return parked;
+        }
+        return Optional.empty();
+    }
+
+    private void park(String id, String oldToken, RefreshOutcome outcome) {
+        try {
+            String plain = outcome.accessToken() + "|" + outcome.refreshToken() + "|" + outcome.refreshExpiresAt();
+            redis.opsForValue().set(RESULT_PREFIX + id, encrypt(oldToken, plain), grace);
+        } catch (GeneralSecurityException | RuntimeException e) {
+            log.warn("Could not park refresh result: {}", e.getMessage());
+        }
+    }
+
+    private Optional<RefreshOutcome> readParked(String id, String oldToken) {
+        try {
+            String sealed = redis.opsForValue().get(RESULT_PREFIX + id);
+            if (sealed == null) return Optional.empty();
+            String[] parts = decrypt(oldToken, sealed).split("\\|");
+            return Optional.of(new RefreshOutcome(parts[0], parts[1], Long.parseLong(parts[2])));
+        } catch (GeneralSecurityException | RuntimeException e) {
+            log.warn("Could not read parked refresh result: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /* -------------------- sealing -------------------- */
+
+    private static SecretKeySpec keyFor(String oldToken) {
+        // different derivation from the lookup id, so the id does not reveal the key
+        return new SecretKeySpec(TokenHashing.sha256("refresh-grace|" + oldToken), "AES");
+    }
+
+    private String encrypt(String oldToken, String plain) throws GeneralSecurityException {
+        byte[] iv = new byte[12];
+        random.nextBytes(iv);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, keyFor(oldToken), new GCMParameterSpec(128, iv));
+        byte[] ct = cipher.doFinal(plain.getBytes(StandardCharsets.UTF_8));
+        return Base64.getEncoder().encodeToString(ByteBuffer.allocate(iv.length + ct.length).put(iv).put(ct).array());
+    }
+
+    private static String decrypt(String oldToken, String sealed) throws GeneralSecurityException {
+        byte[] all = Base64.getDecoder().decode(sealed);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, keyFor(oldToken), new GCMParameterSpec(128, all, 0, 12));
+        return new String(cipher.doFinal(all, 12, all.length - 12), StandardCharsets.UTF_8);
+    }
+}
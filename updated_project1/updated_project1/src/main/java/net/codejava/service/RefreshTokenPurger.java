@@ -0,0 +1,76 @@
+package net.codejava.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import net.codejava.repository.RefreshTokenRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Date;
+
+/**
+ * Removes expired rows from refresh_tokens in small chunks so the table and its
+ * unique token index do not grow with abandoned sessions. Each chunk is its own
+ * short transaction, with a pause in between, so the purge never holds locks for
+ * long. Safe to run on every node: concurrent chunks just find fewer rows.
+ */
+@Component
+@ConditionalOnProperty(name = "app.refresh-store", havingValue = "jpa", matchIfMissing = true)
+public class RefreshTokenPurger {
+    private static final Logger log = LoggerFactory.getLogger(RefreshTokenPurger.class);
+
+    private final RefreshTokenRepository tokenRepository;
+    private final boolean enabled;
+    private final int batchSize;
+    private final Duration pause;
+    private final Counter purged;
+    private final Timer batchTimer;
+
+    public RefreshTokenPurger(RefreshTokenRepository tokenRepository,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.refresh-purge.enabled:true}") boolean enabled,
+                              @Value("${app.refresh-purge.batch-size:1000}") int batchSize,
+                              @Value("${app.refresh-purge.pause:200ms}") Duration pause) {
+        this.tokenRepository = tokenRepository;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.pause = pause;
+        this.purged = Counter.builder("refresh_tokens.purged").register(meterRegistry);
+        this.batchTimer = Timer.builder("refresh_tokens.purge.batch").register(meterRegistry);
+    }
+
+    @Scheduled(initialDelayString = "${app.refresh-purge.interval:10m}",
+            fixedDelayString = "${app.refresh-purge.interval:10m}")
+    public void purgeExpired() {
+        if (!enabled) return;
+        Date cutoff = new Date();
+        long total = 0;
+        int deleted;
+        do {
+            deleted = batchTimer.record(() -> tokenRepository.deleteExpiredBatch(cutoff, batchSize));
+            purged.increment(deleted);
+            total += deleted;
+            if (deleted == batchSize && !sleep()) break;
+        } while (deleted == batchSize);
+
+        if (total > 0) {
+            log.info("Purged {} expired refresh tokens", total);
+        }
+    }
+
+    private boolean sleep() {
+        try {
+            Thread.sleep(pause.toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -2,71 +2,30 @@ package net.codejava.service;
 
 import net.codejava.model.AppUser;
 import net.codejava.model.RefreshToken;
-import net.codejava.repository.AppUserRepository;
-import net.codejava.repository.RefreshTokenRepository;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
-import java.util.Date;
 import java.util.Optional;
-import java.util.UUID;
 
+/**
+ * Refresh token storage. The backing store is chosen with {@code app.refresh-store}
+ * ({@code jpa} - default - or {@code redis}). Only one active token is kept per user.
+ */
+public interface RefreshTokenService {
 
-@Service
-@Transactional
-public class RefreshTokenService {
+    /** Issues a new token for the user, replacing any existing one. */
+    RefreshToken createRefreshToken(String username);
 
-    private final RefreshTokenRepository tokenRepository;
-    private final AppUserRepository userRepository;
+    Optional<RefreshToken> findByToken(String token);
 
+    /** False (and the token is removed) when it has expired. */
+    boolean verifyExpiration(RefreshToken token);
 
-    private final long refreshExpirationMs;
+    /**
+     * Exchanges a valid, unexpired token for a new one. Empty when the token is
+     * unknown or expired; the old token is unusable afterwards either way.
+     */
+    Optional<RefreshToken> rotate(String token);
 
-    public RefreshTokenService(RefreshTokenRepository tokenRepository,
-                               AppUserRepository userRepository,
-                               @Value("${app.refresh-expiration-ms:604800000}") long refreshExpirationMs) {
-        this.tokenRepository = tokenRepository;
-        this.userRepository = userRepository;
-        this.refreshExpirationMs = refreshExpirationMs;
-    }
+    void deleteTokensByUser(AppUser user);
 
-
-    public RefreshToken createRefreshToken(String username) {
-        AppUser user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new IllegalArgumentException("Cannot find user: " + username));
-        // Remove any existing refresh tokens to enforce one active token per user
-        tokenRepository.deleteByUser(user);
-
-        RefreshToken refreshToken = new RefreshToken();
-        refreshToken.setUser(user);
-        refreshToken.setExpiryDate(new Date(System.currentTimeMillis() + refreshExpirationMs));
-        refreshToken.setToken(UUID.randomUUID().toString());
-        return tokenRepository.save(refreshToken);
-    }
-
-
-    @Transactional(readOnly = true)
-    public Optional<RefreshToken> findByToken(String token) {
-        return tokenRepository.findByToken(token);
-    }
-
-
-    public boolean verifyExpiration(RefreshToken token) {
-        if (token.getExpiryDate().before(new Date())) {
-            tokenRepository.delete(token);
-            return false;
-        }
-        return true;
-    }
-
-
-    public void deleteTokensByUser(AppUser user) {
-        tokenRepository.deleteByUser(user);
-    }
-
-
-    public void deleteByToken(String token) {
-        tokenRepository.findByToken(token).ifPresent(tokenRepository::delete);
-    }
-}
\ No newline at end of file
+    void deleteByToken(String token);
+}
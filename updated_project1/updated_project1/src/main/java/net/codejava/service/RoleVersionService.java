@@ -0,0 +1,72 @@
+package net.codejava.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+/**
+ * Per-user role version kept in Redis. Tokens issued in stateless-authorities mode
+ * carry the version they were minted with; bumping it on a role change makes every
+ * outstanding token for that user fail the check, so the client has to refresh and
+ * pick up the new roles.
+ *
+ * Versions are cached locally (app.role-version.cache-ttl); a bump is broadcast on
+ * auth:role-version so every node drops its cached value right away, and a lost
+ * message is bounded by the TTL. When Redis cannot be read and nothing is cached,
+ * {@link #current} returns null and callers fall back to roles from the database.
+ */
+@Service
+public class RoleVersionService {
+    private static final Logger log = LoggerFactory.getLogger(RoleVersionService.class);
+
+    private static final String PREFIX = "auth:role-version:";
+    private static final String CHANNEL = "auth:role-version";
+
+    private final StringRedisTemplate redis;
+    private final LoadingCache<String, Long> versions;
+
+    public RoleVersionService(StringRedisTemplate redis,
+                              RedisMessageListenerContainer listenerContainer,
+                              @Value("${app.role-version.cache-ttl:10s}") Duration cacheTtl) {
+        this.redis = redis;
+        this.versions = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterWrite(cacheTtl)
+                .build(this::read);
+        listenerContainer.addMessageListener(
+                (message, pattern) -> versions.invalidate(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(CHANNEL));
+    }
+
+    /** Current version, or null when Redis is unavailable and no value is cached. */
+    public Long current(String username) {
+        try {
+            return versions.get(username);
+        } catch (RuntimeException e) {
+            log.warn("Role version unavailable for {}: {}", username, e.getMessage());
+            return null;
+        }
+    }
+
+    // failures propagate: a role change that did not reach Redis must not look successful
+    public long bump(String username) {
+        Long v = redis.opsForValue().increment(PREFIX + username);
+        versions.invalidate(username);
+        redis.convertAndSend(CHANNEL, username);
+        return v != null ? v : 0L;
+    }
+
+    private Long read(String username) {
+        String v = redis.opsForValue().get(PREFIX + username);
+        return v != null ? Long.parseLong(v) : 0L;
+    }
+}
@@ -0,0 +1,205 @@
+package net.codejava.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.codejava.dto.StudentDTO;
+import net.codejava.service.CountService.CountedPage;
+import net.codejava.util.AfterCommit;
+import net.codejava.util.TokenHashing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Redis cache of /students/search result pages.
+ *
+ * Keys embed a generation number: the owner's generation for owner-scoped pages,
+ * the global one for admin pages. Every student write bumps the owner's and the
+ * global generation after commit, which orphans all affected pages at once (they
+ * age out on their TTL) - no key scans or deletes.
+ *
+ * A miss is recomputed once per key: concurrent callers on this node share one
+ * future, and across nodes a short NX lock picks the node that runs the query
+ * while the others poll for its result.
+ */
+@Service
+public class SearchPageCache {
+    private static final Logger log = LoggerFactory.getLogger(SearchPageCache.class);
+
+    private static final String GEN_PREFIX = "sc:gen:";
+    private static final String GLOBAL_GEN = GEN_PREFIX + "global";
+    private static final String PAGE_PREFIX = "sc:page:";
+    private static final String LOCK_PREFIX = "sc:lock:";
+    private static final long POLL_MS = 25;
+
+    // deletes the lock only if it still holds our token: once it has expired and another
+    // node has taken it, a late release must not free that node's lock
+    private static final RedisScript<Long> RELEASE = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+              return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+
+    record CachedPage(List<StudentDTO> content, long total, CountService.Mode mode) {}
+
+    private final StringRedisTemplate redis;
+    private final ObjectMapper mapper;
+    private final boolean enabled;
+    private final Duration ttl;
+    private final Duration lockWait;
+    private final ConcurrentHashMap<String, CompletableFuture<CountedPage<StudentDTO>>> inFlight =
+            new ConcurrentHashMap<>();
+
+    public SearchPageCache(StringRedisTemplate redis,
+                           ObjectMapper mapper,
+                           @Value("${app.search-cache.enabled:true}") boolean enabled,
+                           @Value("${app.search-cache.ttl:60s}") Duration ttl,
+                           @Value("${app.search-cache.lock-wait:2s}") Duration lockWait) {
+        this.redis = redis;
+        this.mapper = mapper;
+        this.enabled = enabled;
+        this.ttl = ttl;
+        this.lockWait = lockWait;
+    }
+
+    /**
+     * @param owner    null for admin (global) scope
+     * @param queryKey normalized filter plus paging/sort/count mode
+     */
+    public CountedPage<StudentDTO> get(String owner, String queryKey, Pageable pageable,
+                                       Supplier<CountedPage<StudentDTO>> compute) {
+        if (!enabled) return compute.get();
+
+        String key;
+        try {
+            String gen = redis.opsForValue().get(genKey(owner));
+            key = PAGE_PREFIX + (owner == null ? "g" : "o:" + owner) + ":" + (gen == null ? "0" : gen) + ":"
+                    + TokenHashing.sha256Hex(queryKey);
+            CountedPage<StudentDTO> hit = read(key, pageable);
+            if (hit != null) return hit;
+        } catch (RuntimeException e) {
+            log.warn("Search cache unavailable: {}", e.getMessage());
+            return compute.get();
+        }
+
+        CompletableFuture<CountedPage<StudentDTO>> mine = new CompletableFuture<>();
+        CompletableFuture<CountedPage<StudentDTO>> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            return existing.join();
+        }
+        try {
+            CountedPage<StudentDTO> result = computeOnce(key, pageable, compute);
+            mine.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /** Orphans every cached page that can contain this owner's students. Call from the write's transaction. */
+    public void invalidate(String owner) {
+        if (!enabled) return;
+        AfterCommit.run(() -> {
+            try {
+                if (owner != null) redis.opsForValue().increment(genKey(owner));
+                redis.opsForValue().increment(GLOBAL_GEN);
+            } catch (RuntimeException e) {
+                log.warn("Search cache invalidation failed for {}: {}", owner, e.getMessage());
+            }
+        });
+    }
+
+    /* -------------------- internals -------------------- */
+
+    private CountedPage<StudentDTO> computeOnce(String key, Pageable pageable,
+                                                Supplier<CountedPage<StudentDTO>> compute) {
+        String lockKey = LOCK_PREFIX + key;
+        String token = UUID.randomUUID().toString();
+        Boolean locked;
+        try {
+            locked = redis.opsForValue().setIfAbsent(lockKey, token, lockWait);
+        } catch (RuntimeException e) {
+            return compute.get();
+        }
+        if (Boolean.TRUE.equals(locked)) {
+            try {
+                CountedPage<StudentDTO> result = compute.get();
+                write(key, result);
+                return result;
+            } finally {
+                release(lockKey, token);
+            }
+        }
+
+        // another node is computing this page: wait for it, then give up and compute ourselves
+        long deadline = System.currentTimeMillis() + lockWait.toMillis();
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(POLL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            CountedPage<StudentDTO> hit;
+            try {
+                hit = read(key, pageable);
+            } catch (RuntimeException e) {
+                break;
+            }
+            if (hit != null) return hit;
+        }
+        return compute.get();
+    }
+
+    // must not mask the computed page or the compute's own exception; the lock expires on its own
+    private void release(String lockKey, String token) {
+        try {
+            redis.execute(RELEASE, List.of(lockKey), token);
+        } catch (RuntimeException e) {
+            log.warn("Could not release search cache lock {}: {}", lockKey, e.getMessage());
+        }
+    }
+
+    private CountedPage<StudentDTO> read(String key, Pageable pageable) {
+        String json = redis.opsForValue().get(key);
+        if (json == null) return null;
+        try {
+            CachedPage cached = mapper.readValue(json, CachedPage.class);
+            return new CountedPage<>(new PageImpl<>(cached.content(), pageable, cached.total()), cached.mode());
+        } catch (JsonProcessingException e) {
+            log.warn("Dropping unreadable search cache entry: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void write(String key, CountedPage<StudentDTO> result) {
+        try {
+            CachedPage cached = new CachedPage(result.page().getContent(), result.page().getTotalElements(),
+                    result.mode());
+            redis.opsForValue().set(key, mapper.writeValueAsString(cached), ttl);
+        } catch (JsonProcessingException | RuntimeException e) {
+            log.warn("Could not cache search page: {}", e.getMessage());
+        }
+    }
+
+    private static String genKey(String owner) {
+        return owner == null ? GLOBAL_GEN : GEN_PREFIX + "o:" + owner;
+    }
+}
@@ -0,0 +1,351 @@
+package net.codejava.service;
+
+import net.codejava.dto.StudentDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bulk create / patch / delete for /students/bulk, with the same ownership rules
+ * as {@link StudentService}: everyone creates students they own, admins patch and
+ * delete any student, other users only their own.
+ *
+ * Writes go through JDBC batches (rewriteBatchedStatements folds them into
+ * multi-row statements) in one transaction per request. A constraint violation
+ * rolls the batch back and the items are settled one by one. Side structures
+ * (text index, typeahead, search page cache, second-level cache) are updated the
+ * same way single-item writes update them.
+ */
+@Service
+public class StudentBulkService {
+
+    public enum Status { CREATED, UPDATED, DELETED, NOT_FOUND, DUPLICATE, INVALID, FAILED }
+
+    public record ItemResult(int index, Long id, Status status, String message) {}
+
+    public record BulkReport(int total, int succeeded, List<ItemResult> items) {}
+
+    private final JdbcTemplate jdbc;
+    private final NamedParameterJdbcTemplate namedJdbc;
+    private final TransactionTemplate tx;
+    private final EntityCacheSync entityCache;
+    private final StudentTextIndex textIndex;
+    private final StudentTypeahead typeahead;
+    private final SearchPageCache searchCache;
+    private final int maxItems;
+
+    public StudentBulkService(JdbcTemplate jdbc,
+                              NamedParameterJdbcTemplate namedJdbc,
+                              TransactionTemplate tx,
+                              EntityCacheSync entityCache,
+                              StudentTextIndex textIndex,
+                              StudentTypeahead typeahead,
+                              SearchPageCache searchCache,
+                              @Value("${app.student-bulk.max-items:1000}") int maxItems) {
+        this.jdbc = jdbc;
+        this.namedJdbc = namedJdbc;
+        this.tx = tx;
+        this.entityCache = entityCache;
+        this.textIndex = textIndex;
+        this.typeahead = typeahead;
+        this.searchCache = searchCache;
+        this.maxItems = maxItems;
+    }
+
+    public int getMaxItems() {
+        return maxItems;
+    }
+
+    /* -------------------- create -------------------- */
+
+    public BulkReport create(List<StudentDTO> items, Authentication auth) {
+        String owner = auth.getName();
+        Long ownerId = ownerId(owner);
+        if (ownerId == null) {
+            List<ItemResult> failed = new ArrayList<>();
+            for (int i = 0; i < items.size(); i++) failed.add(new ItemResult(i, null, Status.FAILED, "Unknown user"));
+            return report(items.size(), failed);
+        }
+
+        List<ItemResult> results = new ArrayList<>();
+        List<Indexed> fresh = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < items.size(); i++) {
+            StudentDTO d = items.get(i);
+            String invalid = d == null || d.getName() == null || d.getEmail() == null || d.getAge() == null
+                    ? "name, email and age are required"
+                    : validate(d);
+            if (invalid != null) {
+                results.add(new ItemResult(i, null, Status.INVALID, invalid));
+            } else if (!seen.add(d.getEmail().toLowerCase())) {
+                results.add(new ItemResult(i, null, Status.DUPLICATE, "Email repeated in request"));
+            } else {
+                fresh.add(new Indexed(i, d));
+            }
+        }
+        if (!fresh.isEmpty()) {
+            // one set-based check instead of failing the batch on a known duplicate
+            Set<String> taken = existingEmails(fresh.stream().map(x -> x.dto().getEmail()).toList());
+            List<Indexed> insertable = new ArrayList<>();
+            for (Indexed x : fresh) {
+                if (taken.contains(x.dto().getEmail().toLowerCase())) {
+                    results.add(new ItemResult(x.index(), null, Status.DUPLICATE, "Email already exists"));
+                } else {
+                    insertable.add(x);
+                }
+            }
+            if (!insertable.isEmpty()) {
+                try {
+                    results.addAll(tx.execute(status -> insertBatch(insertable, ownerId, owner)));
+                } catch (DataIntegrityViolationException e) {
+                    // lost a race with a concurrent write: settle item by item
+                    for (Indexed x : insertable) {
+                        try {
+                            results.addAll(tx.execute(status -> insertBatch(List.of(x), ownerId, owner)));
+                        } catch (DuplicateKeyException single) {
+                            results.add(new ItemResult(x.index(), null, Status.DUPLICATE, "Email already exists"));
+                        } catch (DataIntegrityViolationException single) {
+                            results.add(new ItemResult(x.index(), null, Status.FAILED,
+                                    single.getMostSpecificCause().getMessage()));
+                        }
+                    }
+                }
+            }
+        }
+        return report(items.size(), results);
+    }
+
+    private List<ItemResult> insertBatch(List<Indexed> rows, Long ownerId, String owner) {
+        List<Long> ids = insertOwned(rows.stream().map(Indexed::dto).toList(), ownerId, owner);
+        List<ItemResult> results = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            results.add(new ItemResult(rows.get(i).index(), ids.get(i), Status.CREATED, null));
+        }
+        return results;
+    }
+
+    /** Lower-cased emails from {@code emails} that already belong to a student. */
+    public Set<String> existingEmails(Collection<String> emails) {
+        Set<String> taken = new HashSet<>();
+        if (emails.isEmpty()) return taken;
+        namedJdbc.query("SELECT email FROM students WHERE email IN (:emails)", Map.of("emails", emails),
+                rs -> { taken.add(rs.getString(1).toLowerCase()); });
+        return taken;
+    }
+
+    /**
+     * Inserts validated, non-duplicate rows owned by {@code owner} and updates the side
+     * structures. Must run inside a transaction; returns the new ids in input order.
+     */
+    public List<Long> insertOwned(List<StudentDTO> rows, Long ownerId, String owner) {
+        // rows in one batch, ids read back by their unique email (IDENTITY keys)
+        jdbc.batchUpdate("INSERT INTO students (name, email, age, user_id) VALUES (?, ?, ?, ?)",
+                rows, rows.size(), (ps, d) -> {
+                    ps.setString(1, d.getName());
+                    ps.setString(2, d.getEmail());
+                    ps.setInt(3, d.getAge());
+                    ps.setLong(4, ownerId);
+                });
+        Map<String, Long> byEmail = new HashMap<>();
+        namedJdbc.query("SELECT id, email FROM students WHERE email IN (:emails)",
+                Map.of("emails", rows.stream().map(StudentDTO::getEmail).toList()),
+                rs -> { byEmail.put(rs.getString(2).toLowerCase(), rs.getLong(1)); });
+
+        List<Long> ids = new ArrayList<>(rows.size());
+        List<StudentTextIndex.Entry> entries = new ArrayList<>(rows.size());
+        for (StudentDTO d : rows) {
+            Long id = byEmail.get(d.getEmail().toLowerCase());
+            ids.add(id);
+            entries.add(new StudentTextIndex.Entry(id, d.getName(), d.getEmail()));
+            typeahead.put(id, d.getName(), d.getEmail(), owner);
+        }
+        textIndex.indexAll(entries);
+        searchCache.invalidate(owner);
+        return ids;
+    }
+
+    /** Id of the user that owns students created by {@code username}, or null if unknown. */
+    public Long ownerId(String username) {
+        try {
+            return jdbc.queryForObject("SELECT id FROM users WHERE username = ?", Long.class, username);
+        } catch (EmptyResultDataAccessException e) {
+            return null;
+        }
+    }
+
+    /* -------------------- patch -------------------- */
+
+    public BulkReport patch(List<StudentDTO> items, Authentication auth) {
+        List<ItemResult> results = new ArrayList<>();
+        Map<Long, Indexed> byId = new HashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            StudentDTO d = items.get(i);
+            String invalid = d == null || d.getId() == null ? "id is required" : validate(d);
+            if (invalid != null) {
+                results.add(new ItemResult(i, d == null ? null : d.getId(), Status.INVALID, invalid));
+            } else if (byId.putIfAbsent(d.getId(), new Indexed(i, d)) != null) {
+                results.add(new ItemResult(i, d.getId(), Status.DUPLICATE, "id repeated in request"));
+            }
+        }
+        if (byId.isEmpty()) return report(items.size(), results);
+
+        try {
+            results.addAll(tx.execute(status -> updateBatch(byId, auth)));
+        } catch (DataIntegrityViolationException e) {
+            for (Indexed x : byId.values()) {
+                try {
+                    results.addAll(tx.execute(status -> updateBatch(Map.of(x.dto().getId(), x), auth)));
+                } catch (DuplicateKeyException single) {
+                    results.add(new ItemResult(x.index(), x.dto().getId(), Status.DUPLICATE, "Email already exists"));
+                } catch (DataIntegrityViolationException single) {
+                    results.add(new ItemResult(x.index(), x.dto().getId(), Status.FAILED,
+                            single.getMostSpecificCause().getMessage()));
+                }
+            }
+        }
+        return report(items.size(), results);
+    }
+
+    private List<ItemResult> updateBatch(Map<Long, Indexed> byId, Authentication auth) {
+        Map<Long, Row> current = load(byId.keySet(), auth);
+        List<ItemResult> results = new ArrayList<>(byId.size());
+        List<Indexed> found = new ArrayList<>(current.size());
+        for (Indexed x : byId.values()) {
+            if (current.containsKey(x.dto().getId())) {
+                found.add(x);
+            } else {
+                results.add(new ItemResult(x.index(), x.dto().getId(), Status.NOT_FOUND, null));
+            }
+        }
+        if (found.isEmpty()) return results;
+
+        // only the fields present in the patch change, as in StudentService.applyPatch
+        jdbc.batchUpdate("UPDATE students SET name = COALESCE(?, name), email = COALESCE(?, email), "
+                        + "age = COALESCE(?, age) WHERE id = ?",
+                found, found.size(), (ps, x) -> {
+                    ps.setString(1, x.dto().getName());
+                    ps.setString(2, x.dto().getEmail());
+                    if (x.dto().getAge() != null) ps.setInt(3, x.dto().getAge()); else ps.setNull(3, Types.INTEGER);
+                    ps.setLong(4, x.dto().getId());
+                });
+
+        List<StudentTextIndex.Entry> reindex = new ArrayList<>();
+        Set<String> owners = new LinkedHashSet<>();
+        for (Indexed x : found) {
+            Row before = current.get(x.dto().getId());
+            String name = x.dto().getName() != null ? x.dto().getName() : before.name();
+            String email = x.dto().getEmail() != null ? x.dto().getEmail() : before.email();
+            if (x.dto().getName() != null || x.dto().getEmail() != null) {
+                reindex.add(new StudentTextIndex.Entry(before.id(), name, email));
+                typeahead.update(before.id(), name, email);
+            }
+            owners.add(before.owner());
+            results.add(new ItemResult(x.index(), before.id(), Status.UPDATED, null));
+        }
+        textIndex.indexAll(reindex);
+        afterWrite(current.keySet(), owners);
+        return results;
+    }
+
+    /* -------------------- delete -------------------- */
+
+    public BulkReport delete(List<Long> ids, Authentication auth) {
+        List<ItemResult> results = new ArrayList<>();
+        Map<Long, Integer> indexOf = new HashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            Long id = ids.get(i);
+            if (id == null) {
+                results.add(new ItemResult(i, null, Status.INVALID, "id is required"));
+            } else if (indexOf.putIfAbsent(id, i) != null) {
+                results.add(new ItemResult(i, id, Status.DUPLICATE, "id repeated in request"));
+            }
+        }
+        if (!indexOf.isEmpty()) {
+            results.addAll(tx.execute(status -> {
+                Map<Long, Row> current = load(indexOf.keySet(), auth);
+                List<ItemResult> out = new ArrayList<>(indexOf.size());
+                indexOf.forEach((id, i) -> out.add(new ItemResult(i, id,
+                        current.containsKey(id) ? Status.DELETED : Status.NOT_FOUND, null)));
+                if (!current.isEmpty()) {
+                    textIndex.removeAll(current.keySet());
+                    namedJdbc.update("DELETE FROM students WHERE id IN (:ids)", Map.of("ids", current.keySet()));
+                    current.keySet().forEach(typeahead::remove);
+                    afterWrite(current.keySet(), current.values().stream().map(Row::owner).toList());
+                }
+                return out;
+            }));
+        }
+        return report(ids.size(), results);
+    }
+
+    /* -------------------- helpers -------------------- */
+
+    // rows the caller may touch: any for admins, own rows otherwise
+    private Map<Long, Row> load(Collection<Long> ids, Authentication auth) {
+        String sql = "SELECT s.id, s.name, s.email, u.username FROM students s JOIN users u ON u.id = s.user_id "
+                + "WHERE s.id IN (:ids)";
+        MapSqlParameterSource params = new MapSqlParameterSource("ids", ids);
+        if (!isAdmin(auth)) {
+            sql += " AND u.username = :owner";
+            params.addValue("owner", auth.getName());
+        }
+        Map<Long, Row> rows = new HashMap<>();
+        namedJdbc.query(sql + " FOR UPDATE", params, rs -> {
+            rows.put(rs.getLong(1), new Row(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4)));
+        });
+        return rows;
+    }
+
+    // JDBC writes bypass Hibernate, so stale second-level cache entries are evicted explicitly (on every node)
+    private void afterWrite(Collection<Long> ids, Collection<String> owners) {
+        entityCache.evictStudents(ids);
+        new LinkedHashSet<>(owners).forEach(searchCache::invalidate);
+    }
+
+    // column limits, as in StudentImportService.isValid; absent fields are left to the caller (patch keeps them)
+    private static String validate(StudentDTO d) {
+        if (d.getName() != null && (d.getName().isBlank() || d.getName().length() > 100)) {
+            return "name must be 1-100 characters";
+        }
+        if (d.getEmail() != null && (d.getEmail().isBlank() || d.getEmail().length() > 150)) {
+            return "email must be 1-150 characters";
+        }
+        return null;
+    }
+
+    private static BulkReport report(int total, List<ItemResult> results) {
+        List<ItemResult> sorted = new ArrayList<>(results);
+        sorted.sort((a, b) -> Integer.compare(a.index(), b.index()));
+        Set<Status> success = Set.of(Status.CREATED, Status.UPDATED, Status.DELETED);
+        int ok = (int) sorted.stream().filter(r -> success.contains(r.status())).count();
+        return new BulkReport(total, ok, sorted);
+    }
+
+    private static boolean isAdmin(Authentication auth) {
+        return auth != null && auth.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .anyMatch("ROLE_ADMIN"::equals);
+    }
+
+    private record Indexed(int index, StudentDTO dto) {}
+
+    private record Row(Long id, String name, String email, String owner) {}
+}
@@ -0,0 +1,208 @@
+package net.codejava.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Full student export written row by row to the response. Rows come from a
+ * forward-only, read-only result set with MySQL's streaming fetch size
+ * (Integer.MIN_VALUE), so the driver hands over one row at a time and heap use
+ * does not grow with the table. Same owner scoping as {@link StudentService#getAll}.
+ *
+ * An export holds a pooled connection for the whole download, so at most
+ * app.student-export.max-concurrent run at once (others get 503). While rows
+ * stream, the server waits on the client: a reader slower than the session's
+ * net_write_timeout makes MySQL abort mid-file, so the export raises it to
+ * app.student-export.net-write-timeout and restores the global value afterwards.
+ *
+ * When the client goes away, the statement is cancelled before the result set
+ * closes: Connector/J closes a streaming result set by reading every remaining
+ * row, which would otherwise hold the connection and the permit until the whole
+ * table had gone by.
+ */
+@Service
+public class StudentExportService {
+    private static final Logger log = LoggerFactory.getLogger(StudentExportService.class);
+
+    public enum Format {
+        NDJSON, CSV;
+
+        /** @throws IllegalArgumentException for an unknown format */
+        public static Format parse(String value) {
+            return value == null || value.isBlank() ? NDJSON : valueOf(value.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private static final String ADMIN_SQL =
+            "SELECT s.id, s.name, s.email, s.age, u.username FROM students s JOIN users u ON u.id = s.user_id";
+    private static final String OWNER_SQL =
+            "SELECT s.id, s.name, s.email, s.age, NULL AS username FROM students s JOIN users u ON u.id = s.user_id "
+                    + "WHERE u.username = ?";
+    private static final int FLUSH_EVERY = 1000;
+
+    private final JdbcTemplate jdbc;
+    private final ObjectMapper mapper;
+    private final Semaphore permits;
+    private final long netWriteTimeoutSeconds;
+
+    public StudentExportService(JdbcTemplate jdbc, ObjectMapper mapper,
+                                @Value("${app.student-export.max-concurrent:4}") int maxConcurrent,
+                                @Value("${app.student-export.net-write-timeout:10m}") Duration netWriteTimeout) {
+        this.jdbc = jdbc;
+        this.mapper = mapper;
+        this.permits = new Semaphore(Math.max(1, maxConcurrent));
+        this.netWriteTimeoutSeconds = Math.max(1, netWriteTimeout.toSeconds());
+    }
+
+    /** @return false, without writing anything, when the concurrent export limit is reached */
+    public boolean export(Format format, Authentication auth, OutputStream out) throws IOException {
+        if (!permits.tryAcquire()) return false;
+        try {
+            boolean admin = isAdmin(auth);
+            Query query = new Query(admin ? ADMIN_SQL : OWNER_SQL, admin ? null : auth.getName());
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            try {
+                if (format == Format.CSV) {
+                    writeCsv(query, writer, admin);
+                } else {
+                    writeNdjson(query, writer);
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();   // client went away mid-export
+            }
+            writer.flush();
+            return true;
+        } finally {
+            permits.release();
+        }
+    }
+
+    // the session timeout is raised and restored on the same pooled connection the rows stream over
+    private void stream(Query query, RowCallbackHandler handler) {
+        jdbc.execute((ConnectionCallback<Void>) con -> {
+            try (Statement st = con.createStatement()) {
+                st.execute("SET SESSION net_write_timeout = " + netWriteTimeoutSeconds);
+            }
+            try (PreparedStatement ps = con.prepareStatement(query.sql(),
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                ps.setFetchSize(Integer.MIN_VALUE);   // MySQL Connector/J: stream rows
+                if (query.owner() != null) ps.setString(1, query.owner());
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        try {
+                            handler.processRow(rs);
+                        } catch (RuntimeException e) {
+                            cancel(ps, e);
+                            throw e;
+                        }
+                    }
+                }
+            } finally {
+                // a late-arriving cancel can interrupt this too; the export's own outcome must win
+                try (Statement st = con.createStatement()) {
+                    st.execute("SET SESSION net_write_timeout = @@GLOBAL.net_write_timeout");
+                } catch (SQLException e) {
+                    log.warn("Could not restore net_write_timeout after export: {}", e.getMessage());
+                }
+            }
+            return null;
+        });
+    }
+
+    // KILL QUERY on a side connection: the server stops sending, so closing the result set does not drain it
+    private static void cancel(PreparedStatement ps, RuntimeException cause) {
+        try {
+            ps.cancel();
+        } catch (SQLException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    private void writeNdjson(Query query, Writer writer) throws IOException {
+        JsonGenerator gen = mapper.getFactory().createGenerator(writer);
+        gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        int[] rows = {0};
+        stream(query, rs -> {
+            try {
+                gen.writeStartObject();
+                gen.writeNumberField("id", rs.getLong(1));
+                gen.writeStringField("name", rs.getString(2));
+                gen.writeStringField("email", rs.getString(3));
+                int age = rs.getInt(4);
+                if (rs.wasNull()) gen.writeNullField("age"); else gen.writeNumberField("age", age);
+                gen.writeStringField("ownerUsername", rs.getString(5));
+                gen.writeEndObject();
+                gen.writeRaw('\n');
+                if (++rows[0] % FLUSH_EVERY == 0) gen.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        gen.close();
+    }
+
+    private void writeCsv(Query query, Writer writer, boolean admin) throws IOException {
+        writer.write(admin ? "id,name,email,age,ownerUsername\n" : "id,name,email,age\n");
+        int[] rows = {0};
+        stream(query, rs -> {
+            try {
+                writer.write(Long.toString(rs.getLong(1)));
+                writer.write(',');
+                writer.write(csv(rs.getString(2)));
+                writer.write(',');
+                writer.write(csv(rs.getString(3)));
+                writer.write(',');
+                int age = rs.getInt(4);
+                if (!rs.wasNull()) writer.write(Integer.toString(age));
+                if (admin) {
+                    writer.write(',');
+                    writer.write(csv(rs.getString(5)));
+                }
+                writer.write('\n');
+                if (++rows[0] % FLUSH_EVERY == 0) writer.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static String csv(String value) {
+        if (value == null) return "";
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private record Query(String sql, String owner) {}
+
+    private static boolean isAdmin(Authentication auth) {
+        return auth != null && auth.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .anyMatch("ROLE_ADMIN"::equals);
+    }
+}
@@ -0,0 +1,450 @@
+package net.codejava.service;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import net.codejava.dto.StudentDTO;
+import net.codejava.model.StudentImportJob;
+import net.codejava.repository.StudentImportJobRepository;
+import net.codejava.util.Csv;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Background student imports for files too large for /students/bulk. The upload is
+ * spooled to disk and a job row is created; a worker then streams the file (Jackson
+ * MappingIterator or line-by-line CSV) in chunks. Each chunk is validated and
+ * deduplicated by email off the worker thread while the previous chunk commits,
+ * and commits in one transaction together with the job's progress counters.
+ *
+ * Because progress and rows commit together, a job interrupted by a crash resumes
+ * by skipping {@code committedRows} input rows: the sweep picks up queued jobs and
+ * running jobs whose heartbeat has gone stale. Students are owned by the uploader,
+ * as with {@link StudentService#create}.
+ *
+ * Uploads are capped at max-upload-size and only accepted while the spool keeps
+ * min-free-space. Files of failed jobs are kept for failed-retention so they can be
+ * resumed; after that the sweep deletes them and marks the job EXPIRED.
+ */
+@Service
+public class StudentImportService {
+    private static final Logger log = LoggerFactory.getLogger(StudentImportService.class);
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    public enum Format {
+        JSON, CSV;
+
+        public String extension() {
+            return name().toLowerCase();
+        }
+    }
+
+    public record JobView(String id, StudentImportJob.Status status, String format, long committedRows,
+                          long created, long duplicates, long invalid, String error,
+                          Instant createdAt, Instant updatedAt) {
+
+        static JobView of(StudentImportJob j) {
+            return new JobView(j.getId(), j.getStatus(), j.getFormat(), j.getCommittedRows(), j.getCreated(),
+                    j.getDuplicates(), j.getInvalid(), j.getError(), j.getCreatedAt(), j.getUpdatedAt());
+        }
+    }
+
+    private final StudentImportJobRepository jobs;
+    private final StudentBulkService bulkService;
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final ObjectMapper mapper;
+    private final Path dir;
+    private final int chunkSize;
+    private final Duration staleAfter;
+    private final long maxUploadSize;
+    private final long minFreeSpace;
+    private final Duration failedRetention;
+    private final ExecutorService workers;
+    private final ExecutorService validatePool;
+    // jobs this node is running, so the sweep does not queue them twice
+    private final Set<String> running = ConcurrentHashMap.newKeySet();
+
+    public StudentImportService(StudentImportJobRepository jobs,
+                                StudentBulkService bulkService,
+                                JdbcTemplate jdbc,
+                                TransactionTemplate tx,
+                                ObjectMapper mapper,
+                                @Value("${app.student-import.dir:${java.io.tmpdir}/student-imports}") String dir,
+                                @Value("${app.student-import.chunk-size:1000}") int chunkSize,
+                                @Value("${app.student-import.workers:2}") int workers,
+                                @Value("${app.student-import.validate-threads:0}") int validateThreads,
+                                @Value("${app.student-import.stale-after:5m}") Duration staleAfter,
+                                @Value("${app.student-import.max-upload-size:1GB}") DataSize maxUploadSize,
+                                @Value("${app.student-import.min-free-space:1GB}") DataSize minFreeSpace,
+                                @Value("${app.student-import.failed-retention:7d}") Duration failedRetention) {
+        this.jobs = jobs;
+        this.bulkService = bulkService;
+        this.jdbc = jdbc;
+        this.tx = tx;
+        this.mapper = mapper;
+        this.dir = Path.of(dir);
+        this.chunkSize = Math.max(1, chunkSize);
+        this.staleAfter = staleAfter;
+        this.maxUploadSize = maxUploadSize.toBytes();
+        this.minFreeSpace = minFreeSpace.toBytes();
+        this.failedRetention = failedRetention;
+        this.workers = Executors.newFixedThreadPool(Math.max(1, workers), daemon("student-import-"));
+        int threads = validateThreads > 0 ? validateThreads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        this.validatePool = Executors.newFixedThreadPool(threads, daemon("student-import-validate-"));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdownNow();
+        validatePool.shutdownNow();
+    }
+
+    /* -------------------- jobs -------------------- */
+
+    public long getMaxUploadSize() {
+        return maxUploadSize;
+    }
+
+    /** Whether spooling {@code bytes} more would still leave min-free-space on the spool's file system. */
+    public boolean hasSpaceFor(long bytes) throws IOException {
+        Files.createDirectories(dir);
+        return Files.getFileStore(dir).getUsableSpace() - bytes >= minFreeSpace;
+    }
+
+    /** Spools the upload and queues the job; empty when the body exceeds max-upload-size. */
+    public Optional<JobView> submit(InputStream body, Format format, Authentication auth) throws IOException {
+        String id = UUID.randomUUID().toString();
+        Files.createDirectories(dir);
+        Path file = dir.resolve(id + "." + format.extension());
+        if (!spool(body, file)) {
+            Files.deleteIfExists(file);
+            return Optional.empty();
+        }
+        StudentImportJob job = jobs.save(new StudentImportJob(id, auth.getName(), format.name(), file.toString()));
+        schedule(id);
+        return Optional.of(JobView.of(job));
+    }
+
+    // the length header may be missing (chunked) or wrong, so the limit is enforced on the bytes themselves
+    private boolean spool(InputStream body, Path file) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long written = 0;
+        try (OutputStream out = Files.newOutputStream(file)) {
+            for (int n; (n = body.read(buffer)) != -1; ) {
+                written += n;
+                if (written > maxUploadSize) return false;
+                out.write(buffer, 0, n);
+            }
+        }
+        return true;
+    }
+
+    // owners see their own jobs, admins every job; anything else looks like a missing job
+    public Optional<JobView> find(String id, Authentication auth) {
+        return jobs.findById(id)
+                .filter(j -> isAdmin(auth) || j.getOwner().equals(auth.getName()))
+                .map(JobView::of);
+    }
+
+    public List<JobView> list(Authentication auth) {
+        return jobs.findByOwnerOrderByCreatedAtDesc(auth.getName()).stream().map(JobView::of).toList();
+    }
+
+    /** Re-queues a failed job; it continues after the last committed chunk. */
+    public Optional<JobView> resume(String id, Authentication auth) {
+        Optional<JobView> job = find(id, auth);
+        if (job.isEmpty() || job.get().status() != StudentImportJob.Status.FAILED) return job;
+        if (jobs.requeue(id, Instant.now()) > 0) {
+            schedule(id);
+        }
+        return find(id, auth);
+    }
+
+    // picks up queued jobs (including ones submitted before a restart) and jobs orphaned by a dead node
+    @Scheduled(initialDelay = 0, fixedDelayString = "${app.student-import.sweep-interval:60s}")
+    public void sweep() {
+        try {
+            jobs.findResumable(Instant.now().minus(staleAfter)).forEach(this::schedule);
+            expireFailed();
+        } catch (RuntimeException e) {
+            log.warn("Student import sweep failed: {}", e.getMessage());
+        }
+    }
+
+    private void expireFailed() {
+        for (StudentImportJob job : jobs.findFailedBefore(Instant.now().minus(failedRetention))) {
+            if (jobs.expire(job.getId(), Instant.now()) == 0) continue;
+            try {
+                Files.deleteIfExists(Path.of(job.getFilePath()));
+            } catch (IOException e) {
+                log.warn("Could not delete upload of expired import {}: {}", job.getId(), e.getMessage());
+            }
+        }
+    }
+
+    private void schedule(String id) {
+        if (running.add(id)) {
+            workers.execute(() -> {
+                try {
+                    run(id);
+                } finally {
+                    running.remove(id);
+                }
+            });
+        }
+    }
+
+    private void run(String id) {
+        if (jobs.claim(id, Instant.now(), Instant.now().minus(staleAfter)) == 0) return;
+        StudentImportJob job = jobs.findById(id).orElse(null);
+        if (job == null) return;
+        try {
+            Long ownerId = bulkService.ownerId(job.getOwner());
+            if (ownerId == null) {
+                jobs.finish(id, StudentImportJob.Status.FAILED, "Unknown user", Instant.now());
+                return;
+            }
+            Path file = Path.of(job.getFilePath());
+            if (!Files.exists(file)) {
+                jobs.finish(id, StudentImportJob.Status.FAILED, "Upload file is missing", Instant.now());
+                return;
+            }
+            importFile(job, ownerId, file);
+            jobs.finish(id, StudentImportJob.Status.COMPLETED, null, Instant.now());
+            Files.deleteIfExists(file);
+            log.info("Student import {} completed", id);
+        } catch (Exception e) {
+            log.warn("Student import {} failed: {}", id, e.getMessage());
+            jobs.finish(id, StudentImportJob.Status.FAILED, truncate(e.getMessage()), Instant.now());
+        }
+    }
+
+    /* -------------------- pipeline -------------------- */
+
+    private void importFile(StudentImportJob job, Long ownerId, Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file);
+             Rows rows = open(Format.valueOf(job.getFormat()), in)) {
+            // resume point: everything before it committed along with the counters. Skipping a large
+            // prefix can outlast stale-after, so the heartbeat keeps other nodes from claiming the job
+            long heartbeatNanos = staleAfter.toNanos() / 4;
+            long lastBeat = System.nanoTime();
+            for (long i = 0; i < job.getCommittedRows() && rows.hasNext(); i++) {
+                rows.next();
+                if (i % chunkSize == 0 && System.nanoTime() - lastBeat > heartbeatNanos) {
+                    heartbeat(job.getId());
+                    lastBeat = System.nanoTime();
+                }
+            }
+            CompletableFuture<Chunk> pending = null;
+            while (rows.hasNext()) {
+                List<StudentDTO> batch = new ArrayList<>(chunkSize);
+                while (batch.size() < chunkSize && rows.hasNext()) {
+                    batch.add(rows.next());
+                }
+                // validate this chunk while the previous one commits; commits stay in input order
+                CompletableFuture<Chunk> next = CompletableFuture.supplyAsync(() -> validate(batch), validatePool);
+                if (pending != null) commit(job, ownerId, pending.join());
+                pending = next;
+            }
+            if (pending != null) commit(job, ownerId, pending.join());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void heartbeat(String id) {
+        jdbc.update("UPDATE student_import_jobs SET updated_at = ? WHERE id = ?", Timestamp.from(Instant.now()), id);
+    }
+
+    private static Chunk validate(List<StudentDTO> batch) {
+        List<StudentDTO> valid = new ArrayList<>(batch.size());
+        Set<String> seen = new HashSet<>();
+        int invalid = 0;
+        int duplicates = 0;
+        for (StudentDTO d : batch) {
+            if (!isValid(d)) {
+                invalid++;
+            } else if (!seen.add(d.getEmail().toLowerCase())) {
+                duplicates++;
+            } else {
+                valid.add(d);
+            }
+        }
+        return new Chunk(batch.size(), valid, invalid, duplicates);
+    }
+
+    // rows, students and counters in one transaction; a race with a concurrent insert re-checks the chunk
+    private void commit(StudentImportJob job, Long ownerId, Chunk chunk) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                tx.executeWithoutResult(status -> {
+                    Set<String> taken = bulkService.existingEmails(chunk.valid().stream().map(StudentDTO::getEmail).toList());
+                    List<StudentDTO> fresh = chunk.valid().stream()
+                            .filter(d -> !taken.contains(d.getEmail().toLowerCase()))
+                            .toList();
+                    if (!fresh.isEmpty()) {
+                        bulkService.insertOwned(fresh, ownerId, job.getOwner());
+                    }
+                    jdbc.update("UPDATE student_import_jobs SET committed_rows = committed_rows + ?, "
+                                    + "created = created + ?, duplicates = duplicates + ?, invalid = invalid + ?, "
+                                    + "updated_at = ? WHERE id = ?",
+                            chunk.rows(), fresh.size(), chunk.duplicates() + taken.size(), chunk.invalid(),
+                            Timestamp.from(Instant.now()), job.getId());
+                });
+                return;
+            } catch (DataIntegrityViolationException e) {
+                if (attempt >= MAX_ATTEMPTS) throw e;
+            }
+        }
+    }
+
+    /* -------------------- input formats -------------------- */
+
+    private Rows open(Format format, InputStream in) throws IOException {
+        if (format == Format.JSON) {
+            // a top-level array or whitespace-separated objects (NDJSON) both stream
+            MappingIterator<StudentDTO> it = mapper.readerFor(StudentDTO.class).readValues(in);
+            return new Rows() {
+                @Override public boolean hasNext() { return it.hasNext(); }
+
+                // an unbindable row still counts towards the resume offset; it is reported as invalid
+                @Override public StudentDTO next() {
+                    try {
+                        return it.next();
+                    } catch (RuntimeException e) {
+                        if (e instanceof NoSuchElementException) throw e;
+                        return null;
+                    }
+                }
+
+                @Override public void close() throws IOException { it.close(); }
+            };
+        }
+        return new CsvStudents(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+    }
+
+    private interface Rows extends Iterator<StudentDTO>, Closeable {}
+
+    /** CSV: {@code name,email,age}; header row optional, double-quoted fields allowed. */
+    private static final class CsvStudents implements Rows {
+        private final BufferedReader reader;
+        private String next;
+        private boolean first = true;
+
+        CsvStudents(BufferedReader reader) {
+            this.reader = reader;
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public StudentDTO next() {
+            if (next == null) throw new NoSuchElementException();
+            List<String> f = Csv.split(next);
+            advance();
+            StudentDTO d = new StudentDTO();
+            d.setName(f.isEmpty() ? null : f.get(0).trim());
+            d.setEmail(f.size() > 1 ? f.get(1).trim() : null);
+            try {
+                d.setAge(f.size() > 2 ? Integer.valueOf(f.get(2).trim()) : null);
+            } catch (NumberFormatException e) {
+                d.setAge(null);
+            }
+            return d;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+
+        private void advance() {
+            try {
+                do {
+                    next = reader.readLine();
+                    if (first && next != null && next.toLowerCase().startsWith("name,")) {
+                        next = reader.readLine();
+                    }
+                    first = false;
+                } while (next != null && next.isBlank());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /* -------------------- helpers -------------------- */
+
+    // same requirements as POST /students, plus the column limits
+    private static boolean isValid(StudentDTO d) {
+        return d != null
+                && d.getName() != null && !d.getName().isBlank() && d.getName().length() <= 100
+                && d.getEmail() != null && !d.getEmail().isBlank() && d.getEmail().length() <= 150
+                && d.getAge() != null;
+    }
+
+    private static String truncate(String message) {
+        if (message == null) return "Import failed";
+        return message.length() > 500 ? message.substring(0, 500) : message;
+    }
+
+    private static ThreadFactory daemon(String prefix) {
+        AtomicInteger seq = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    private static boolean isAdmin(Authentication auth) {
+        return auth != null && auth.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .anyMatch("ROLE_ADMIN"::equals);
+    }
+
+    private record Chunk(int rows, List<StudentDTO> valid, int invalid, int duplicates) {}
+}
@@ -4,17 +4,26 @@ import net.codejava.dto.StudentDTO;
 import net.codejava.model.AppUser;
 import net.codejava.model.Student;
 import net.codejava.repository.AppUserRepository;
+import net.codejava.repository.StudentFilter;
 import net.codejava.repository.StudentRepository;
+import net.codejava.repository.StudentRepositoryCustom.DeletedBatch;
+import net.codejava.service.CountService.CountedPage;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.domain.Slice;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.util.StringUtils;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
@@ -23,10 +32,27 @@ public class StudentService {
 
     private final StudentRepository studentRepository;
     private final AppUserRepository userRepository;
+    private final CountService countService;
+    private final StudentTextIndex textIndex;
+    private final StudentTypeahead typeahead;
+    private final SearchPageCache searchCache;
+    private final NamedParameterJdbcTemplate jdbc;
+    private final EntityCacheSync entityCache;
+    private final TransactionTemplate tx;
 
-    public StudentService(StudentRepository studentRepository, AppUserRepository userRepository) {
+    public StudentService(StudentRepository studentRepository, AppUserRepository userRepository,
+                          CountService countService, StudentTextIndex textIndex, StudentTypeahead typeahead,
+                          SearchPageCache searchCache, NamedParameterJdbcTemplate jdbc,
+                          EntityCacheSync entityCache, TransactionTemplate tx) {
         this.studentRepository = studentRepository;
         this.userRepository = userRepository;
+        this.countService = countService;
+        this.textIndex = textIndex;
+        this.typeahead = typeahead;
+        this.searchCache = searchCache;
+        this.jdbc = jdbc;
+        this.entityCache = entityCache;
+        this.tx = tx;
     }
 
     /* -------------------- helpers -------------------- */
@@ -47,31 +73,66 @@ public class StudentService {
         );
     }
 
-    private void applyPatch(Student s, StudentDTO dto) {
-        if (dto.getName() != null) s.setName(dto.getName());
-        if (dto.getEmail() != null) s.setEmail(dto.getEmail());
-        if (dto.getAge() != null) s.setAge(dto.getAge());
+    private void reindexIfTextChanged(StudentDTO after, StudentDTO patch) {
+        if (patch.getName() != null || patch.getEmail() != null) {
+            textIndex.index(after.getId(), after.getName(), after.getEmail());
+            typeahead.update(after.getId(), after.getName(), after.getEmail());
+        }
     }
 
-    private Specification<Student> buildSpec(String name, Integer minAge, Integer maxAge, String ownerUsernameOrNull) {
-        return (root, q, cb) -> {
-            var predicates = new java.util.ArrayList<jakarta.persistence.criteria.Predicate>();
+    private static boolean isEmptyPatch(StudentDTO dto) {
+        return dto.getName() == null && dto.getEmail() == null && dto.getAge() == null;
+    }
 
-            if (StringUtils.hasText(name)) {
-                predicates.add(cb.like(cb.lower(root.get("name")), "%" + name.toLowerCase().trim() + "%"));
-            }
-            if (minAge != null) {
-                predicates.add(cb.greaterThanOrEqualTo(root.get("age"), minAge));
-            }
-            if (maxAge != null) {
-                predicates.add(cb.lessThanOrEqualTo(root.get("age"), maxAge));
-            }
-            if (ownerUsernameOrNull != null) {
-                // join owner and filter by username
-                predicates.add(cb.equal(root.join("owner").get("username"), ownerUsernameOrNull));
-            }
-            return cb.and(predicates.toArray(new jakarta.persistence.criteria.Predicate[0]));
-        };
+    /*
+     * One UPDATE touching only the columns present in the patch; owner scoping is part
+     * of the WHERE, so the matched-row count alone tells 404 from success. Connector/J
+     * reports matched (not changed) rows, so a patch that changes nothing still counts.
+     */
+    private int applyPatch(Long id, String owner, StudentDTO dto) {
+        List<String> set = new ArrayList<>(3);
+        MapSqlParameterSource params = new MapSqlParameterSource("id", id);
+        if (dto.getName() != null) {
+            set.add("name = :name");
+            params.addValue("name", dto.getName());
+        }
+        if (dto.getEmail() != null) {
+            set.add("email = :email");
+            params.addValue("email", dto.getEmail());
+        }
+        if (dto.getAge() != null) {
+            set.add("age = :age");
+            params.addValue("age", dto.getAge());
+        }
+        String sql = "UPDATE students SET " + String.join(", ", set) + " WHERE id = :id";
+        if (owner != null) {
+            sql += " AND user_id = (SELECT id FROM users WHERE username = :owner)";
+            params.addValue("owner", owner);
+        }
+        int n = jdbc.update(sql, params);
+        if (n > 0) evictAfterCommit(List.of(id));
+        return n;
+    }
+
+    private int deleteRow(Long id, String owner) {
+        String sql = "DELETE FROM students WHERE id = :id";
+        MapSqlParameterSource params = new MapSqlParameterSource("id", id);
+        if (owner != null) {
+            sql += " AND user_id = (SELECT id FROM users WHERE username = :owner)";
+            params.addValue("owner", owner);
+        }
+        int n = jdbc.update(sql, params);
+        if (n > 0) {
+            textIndex.remove(id);
+            typeahead.remove(id);
+            evictAfterCommit(List.of(id));
+        }
+        return n;
+    }
+
+    // JDBC writes bypass Hibernate, so the second-level cache entries are evicted explicitly (on every node)
+    private void evictAfterCommit(List<Long> ids) {
+        entityCache.evictStudents(ids);
     }
 
     /* -------------------- read APIs -------------------- */
@@ -80,27 +141,56 @@ public class StudentService {
     public List<StudentDTO> getAll(Authentication auth) {
         boolean admin = isAdmin(auth);
         if (admin) {
-            return studentRepository.findAll().stream().map(s -> toDTO(s, true)).toList();
+            return studentRepository.findAllDtos();
         } else {
             String username = auth.getName();
-            return studentRepository.findByOwner_Username(username).stream().map(s -> toDTO(s, false)).toList();
+            return studentRepository.findDtosByOwner(username);
         }
     }
 
 
-    public Page<StudentDTO> search(String name, Integer minAge, Integer maxAge, Pageable pageable, Authentication auth) {
+    public Page<StudentDTO> search(String name, String email, Integer minAge, Integer maxAge, Pageable pageable,
+                                   Authentication auth) {
+        boolean admin = isAdmin(auth);
+        String owner = admin ? null : auth.getName();
+        return studentRepository.searchDtos(new StudentFilter(name, email, minAge, maxAge, owner), pageable, admin);
+    }
+
+    public CountedPage<StudentDTO> search(String name, String email, Integer minAge, Integer maxAge,
+                                          Pageable pageable, CountService.Mode countMode, Authentication auth) {
+        boolean admin = isAdmin(auth);
+        StudentFilter filter = new StudentFilter(name, email, minAge, maxAge, admin ? null : auth.getName());
+        String queryKey = filter.normalizedKey() + "|" + pageable.getPageNumber() + "|" + pageable.getPageSize()
+                + "|" + pageable.getSort() + "|" + countMode;
+        return searchCache.get(filter.ownerUsername(), queryKey, pageable,
+                () -> countService.page("students", filter.isUnfiltered() ? null : filter.normalizedKey(), countMode,
+                        () -> studentRepository.countDtos(filter),
+                        total -> studentRepository.searchDtos(filter, pageable, admin, total)));
+    }
+
+    // keyset mode: no OFFSET, no COUNT
+    public Slice<StudentDTO> searchAfter(String name, String email, Integer minAge, Integer maxAge, Long afterId,
+                                         int size, Authentication auth) {
         boolean admin = isAdmin(auth);
         String owner = admin ? null : auth.getName();
-        var spec = buildSpec(name, minAge, maxAge, owner);
-        return studentRepository.findAll(spec, pageable).map(s -> toDTO(s, admin));
+        return studentRepository.searchDtosAfter(new StudentFilter(name, email, minAge, maxAge, owner),
+                afterId, size, admin);
+    }
+
+    // answered from memory; same scoping as the other reads
+    public List<StudentTypeahead.Hit> typeahead(String query, int limit, Authentication auth) {
+        return typeahead.suggest(query, isAdmin(auth) ? null : auth.getName(), limit);
+    }
+
+    public boolean isTypeaheadEnabled() {
+        return typeahead.isEnabled();
     }
 
     public Optional<StudentDTO> getById(Long id, Authentication auth) {
         boolean admin = isAdmin(auth);
-        Optional<Student> s = admin
-                ? studentRepository.findById(id)
-                : studentRepository.findByIdAndOwner_Username(id, auth.getName());
-        return s.map(st -> toDTO(st, admin));
+        return admin
+                ? studentRepository.findDtoById(id)
+                : studentRepository.findDtoByIdAndOwner(id, auth.getName());
     }
 
     /* -------------------- write APIs -------------------- */
@@ -113,41 +203,90 @@ public class StudentService {
 
         Student s = new Student(dto.getName(), dto.getEmail(), dto.getAge(), userOpt.get());
         Student saved = studentRepository.save(s);
+        textIndex.index(saved.getId(), saved.getName(), saved.getEmail());
+        typeahead.put(saved.getId(), saved.getName(), saved.getEmail(), userOpt.get().getUsername());
+        searchCache.invalidate(userOpt.get().getUsername());
         return Optional.of(toDTO(saved, isAdmin(auth)));
     }
 
 
     @Transactional
     public Optional<StudentDTO> updateAdmin(Long id, StudentDTO dto) {
-        return studentRepository.findById(id).map(s -> {
-            applyPatch(s, dto);
-            return toDTO(studentRepository.save(s), true);
-        });
+        if (isEmptyPatch(dto)) return studentRepository.findDtoById(id);
+        if (applyPatch(id, null, dto) == 0) return Optional.empty();
+        // read back for the response; it also names the owner whose pages go stale
+        StudentDTO after = studentRepository.findDtoById(id).orElseThrow();
+        reindexIfTextChanged(after, dto);
+        searchCache.invalidate(after.getOwnerUsername());
+        return Optional.of(after);
     }
 
 
     @Transactional
     public Optional<StudentDTO> updateSelf(Long id, StudentDTO dto, Authentication auth) {
-        return studentRepository.findByIdAndOwner_Username(id, auth.getName()).map(s -> {
-            applyPatch(s, dto);
-            return toDTO(studentRepository.save(s), false);
-        });
+        if (isEmptyPatch(dto)) return studentRepository.findDtoByIdAndOwner(id, auth.getName());
+        if (applyPatch(id, auth.getName(), dto) == 0) return Optional.empty();
+        // a full replacement already describes the row; partial patches read it back
+        StudentDTO after = dto.getName() != null && dto.getEmail() != null && dto.getAge() != null
+                ? new StudentDTO(id, dto.getName(), dto.getEmail(), dto.getAge())
+                : studentRepository.findDtoByIdAndOwner(id, auth.getName()).orElseThrow();
+        reindexIfTextChanged(after, dto);
+        searchCache.invalidate(auth.getName());
+        return Optional.of(after);
     }
 
 
     @Transactional
     public boolean deleteAdmin(Long id) {
-        if (!studentRepository.existsById(id)) return false;
-        studentRepository.deleteById(id);
+        // PK lookup for the owner whose cached pages go stale; the DELETE's row count decides the result
+        Optional<StudentDTO> s = studentRepository.findDtoById(id);
+        if (s.isEmpty() || deleteRow(id, null) == 0) return false;
+        searchCache.invalidate(s.get().getOwnerUsername());
         return true;
     }
 
 
     @Transactional
     public boolean deleteSelf(Long id, Authentication auth) {
-        Optional<Student> s = studentRepository.findByIdAndOwner_Username(id, auth.getName());
-        if (s.isEmpty()) return false;
-        studentRepository.delete(s.get());
+        if (deleteRow(id, auth.getName()) == 0) return false;
+        searchCache.invalidate(auth.getName());
         return true;
     }
+
+
+    /**
+     * Admin delete of every student matching the search filters, in batches of up to
+     * 1000 rows walked in id order. Each batch is a DELETE with the same predicates as
+     * /students/search, so a row changed since it was selected is not deleted, and
+     * commits in its own transaction together with its side-structure updates. Row
+     * locks, undo and pending after-commit work are therefore bounded by one batch;
+     * a failure keeps the batches already committed. Called inside an existing
+     * transaction, all batches join it instead.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public int deleteMatching(String name, String email, Integer minAge, Integer maxAge) {
+        StudentFilter filter = new StudentFilter(name, email, minAge, maxAge, null);
+        int deleted = 0;
+        long afterId = 0;
+        while (true) {
+            long from = afterId;
+            DeletedBatch batch = tx.execute(status -> deleteBatch(filter, from));
+            if (batch.lastId() == null) break;
+            deleted += batch.deleted().size();
+            afterId = batch.lastId();
+        }
+        return deleted;
+    }
+
+    private DeletedBatch deleteBatch(StudentFilter filter, long afterId) {
+        DeletedBatch batch = studentRepository.deleteMatchingBatch(filter, afterId, 1000);
+        List<Long> ids = List.copyOf(batch.deleted().keySet());
+        if (!ids.isEmpty()) {
+            textIndex.removeAll(ids);
+            ids.forEach(typeahead::remove);
+            evictAfterCommit(ids);
+            new LinkedHashSet<>(batch.deleted().values()).forEach(searchCache::invalidate);
+        }
+        return batch;
+    }
 }
@@ -0,0 +1,121 @@
+package net.codejava.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import net.codejava.model.StudentGram;
+import net.codejava.util.Trigrams;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Maintains student_grams, the trigram index behind name/email substring search.
+ * Every student write in {@link StudentService} re-indexes the row in the same
+ * transaction. Existing data is indexed at startup, before the web server takes
+ * traffic, only when asked to: {@code backfill-on-startup} indexes students without
+ * grams (first enable), {@code rebuild-on-startup} re-indexes every student. Both walk
+ * the table in id order and replace one batch's grams per transaction, so other
+ * nodes keep finding every student while it runs.
+ *
+ * When {@code app.text-search.enabled=false} nothing is maintained and search
+ * falls back to plain LIKE.
+ */
+@Service
+public class StudentTextIndex implements SmartInitializingSingleton {
+    private static final Logger log = LoggerFactory.getLogger(StudentTextIndex.class);
+
+    private static final int BACKFILL_BATCH = 1000;
+
+    public record Entry(Long id, String name, String email) {}
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final boolean enabled;
+    private final boolean backfillOnStartup;
+    private final boolean rebuildOnStartup;
+
+    // EntityManagerFactory only to make sure ddl-auto has created student_grams first
+    public StudentTextIndex(JdbcTemplate jdbc,
+                            TransactionTemplate tx,
+                            EntityManagerFactory entityManagerFactory,
+                            @Value("${app.text-search.enabled:true}") boolean enabled,
+                            @Value("${app.text-search.backfill-on-startup:false}") boolean backfillOnStartup,
+                            @Value("${app.text-search.rebuild-on-startup:false}") boolean rebuildOnStartup) {
+        this.jdbc = jdbc;
+        this.tx = tx;
+        this.enabled = enabled;
+        this.backfillOnStartup = backfillOnStartup;
+        this.rebuildOnStartup = rebuildOnStartup;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Replaces the grams of one student. Call inside the write's transaction. */
+    public void index(Long studentId, String name, String email) {
+        if (!enabled || studentId == null) return;
+        indexAll(List.of(new Entry(studentId, name, email)));
+    }
+
+    /** Replaces the grams of many students: one delete batch, one insert batch. */
+    public void indexAll(List<Entry> entries) {
+        if (!enabled || entries.isEmpty()) return;
+        removeAll(entries.stream().map(Entry::id).toList());
+        List<Object[]> rows = new ArrayList<>();
+        for (Entry e : entries) {
+            for (String g : Trigrams.of(e.name())) rows.add(new Object[]{g, StudentGram.NAME, e.id()});
+            for (String g : Trigrams.of(e.email())) rows.add(new Object[]{g, StudentGram.EMAIL, e.id()});
+        }
+        if (!rows.isEmpty()) {
+            jdbc.batchUpdate("INSERT INTO student_grams (gram, source, student_id) VALUES (?, ?, ?)", rows);
+        }
+    }
+
+    public void remove(Long studentId) {
+        if (!enabled || studentId == null) return;
+        jdbc.update("DELETE FROM student_grams WHERE student_id = ?", studentId);
+    }
+
+    public void removeAll(Collection<Long> studentIds) {
+        if (!enabled || studentIds.isEmpty()) return;
+        jdbc.batchUpdate("DELETE FROM student_grams WHERE student_id = ?",
+                studentIds.stream().map(id -> new Object[]{id}).toList());
+    }
+
+    /* -------------------- startup backfill -------------------- */
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!enabled || !(backfillOnStartup || rebuildOnStartup)) return;
+        int total = indexExisting(!rebuildOnStartup);
+        if (total > 0) {
+            log.info("Indexed {} students for text search", total);
+        }
+    }
+
+    // indexAll replaces each batch's grams in place; a student is never without grams in between
+    private int indexExisting(boolean missingOnly) {
+        String sql = "SELECT s.id, s.name, s.email FROM students s WHERE s.id > ? "
+                + (missingOnly ? "AND NOT EXISTS (SELECT 1 FROM student_grams g WHERE g.student_id = s.id) " : "")
+                + "ORDER BY s.id LIMIT " + BACKFILL_BATCH;
+        int total = 0;
+        long after = 0;
+        while (true) {
+            List<Entry> batch = jdbc.query(sql,
+                    (rs, i) -> new Entry(rs.getLong(1), rs.getString(2), rs.getString(3)), after);
+            if (batch.isEmpty()) break;
+            tx.executeWithoutResult(status -> indexAll(batch));
+            total += batch.size();
+            after = batch.get(batch.size() - 1).id();
+        }
+        return total;
+    }
+}
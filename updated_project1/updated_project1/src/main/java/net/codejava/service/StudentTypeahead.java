@@ -0,0 +1,579 @@
+package net.codejava.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import net.codejava.util.LongIntMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory typeahead over student name and email, partitioned by owner the same
+ * way {@link StudentService} scopes reads (admins see every partition).
+ *
+ * Each partition maps a trigram (three chars packed into a long) to a sorted
+ * posting list of document numbers held in a plain int[]. Values are indexed with
+ * two leading pad characters, so one- and two-character queries are prefix
+ * lookups and longer ones are substring lookups; candidates from the posting
+ * intersection are verified against the stored strings.
+ *
+ * Built at startup from a streaming scan; kept current by student writes, applied
+ * after their transaction commits. Every node holds its own copy: the writing node
+ * applies a transaction's changes in one go and publishes the ids it touched as one
+ * message on typeahead:changes, and the other nodes re-read those students from the
+ * database (up to 1000 per query). Other nodes are
+ * therefore behind by the pub/sub delivery time (milliseconds); messages lost while
+ * a node is disconnected from Redis are repaired by the periodic rebuild
+ * ({@code app.typeahead.rebuild-interval}). Disabled by default
+ * ({@code app.typeahead.enabled}).
+ */
+@Service
+public class StudentTypeahead implements SmartInitializingSingleton {
+    private static final Logger log = LoggerFactory.getLogger(StudentTypeahead.class);
+
+    private static final char PAD = '\u0001';
+    private static final String CHANNEL = "typeahead:changes";
+    private static final String SCAN_SQL =
+            "SELECT s.id, s.name, s.email, u.username FROM students s JOIN users u ON u.id = s.user_id";
+    private static final int NO_DOC = -1;
+    private static final int RELOAD_BATCH = 1000;
+
+    public record Hit(Long id, String name, String email, String ownerUsername) {}
+
+    public record Stats(boolean enabled, int documents, int partitions, long grams, long memoryBytes) {}
+
+    private final JdbcTemplate jdbc;
+    private final StringRedisTemplate redis;
+    private final boolean enabled;
+    // tags this node's messages so it does not re-apply its own changes
+    private final String nodeId = UUID.randomUUID().toString();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /* ---- documents: parallel arrays indexed by doc number ---- */
+    private long[] ids = new long[1024];
+    private String[] names = new String[1024];
+    private String[] emails = new String[1024];
+    private Partition[] partitionOf = new Partition[1024];
+    private int docCount;
+    private int[] freeDocs = new int[16];
+    private int freeCount;
+    private final LongIntMap docById = new LongIntMap(1024, NO_DOC);
+
+    private final Map<String, Partition> partitions = new HashMap<>();
+
+    // EntityManagerFactory only to make sure ddl-auto has created the tables first
+    public StudentTypeahead(JdbcTemplate jdbc,
+                            EntityManagerFactory entityManagerFactory,
+                            StringRedisTemplate redis,
+                            RedisMessageListenerContainer listenerContainer,
+                            MeterRegistry meterRegistry,
+                            @Value("${app.typeahead.enabled:false}") boolean enabled) {
+        this.jdbc = jdbc;
+        this.redis = redis;
+        this.enabled = enabled;
+        if (enabled) {
+            listenerContainer.addMessageListener(
+                    (message, pattern) -> onChange(new String(message.getBody(), StandardCharsets.UTF_8)),
+                    new ChannelTopic(CHANNEL));
+            Gauge.builder("typeahead.documents", this, t -> t.stats().documents()).register(meterRegistry);
+            Gauge.builder("typeahead.memory", this, t -> t.stats().memoryBytes())
+                    .baseUnit("bytes").register(meterRegistry);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /* -------------------- startup build -------------------- */
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!enabled) return;
+        long started = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            scan(this::putLocked);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Stats s = stats();
+        log.info("Typeahead index built: {} students, {} owners, ~{} KiB in {} ms", s.documents(), s.partitions(),
+                s.memoryBytes() / 1024, (System.nanoTime() - started) / 1_000_000);
+    }
+
+    /*
+     * Repairs changes missed while pub/sub was down. Rows are read without the lock;
+     * readers are only blocked while the index is swapped for the fresh rows.
+     */
+    @Scheduled(initialDelayString = "${app.typeahead.rebuild-interval:1h}",
+            fixedDelayString = "${app.typeahead.rebuild-interval:1h}")
+    public void rebuild() {
+        if (!enabled) return;
+        List<Row> rows = new ArrayList<>(Math.max(16, docById.size()));
+        try {
+            scan((id, name, email, owner) -> rows.add(new Row(id, name, email, owner)));
+        } catch (RuntimeException e) {
+            log.warn("Typeahead rebuild failed: {}", e.getMessage());
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            clearLocked();
+            for (Row r : rows) putLocked(r.id(), r.name(), r.email(), r.owner());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void scan(RowConsumer consumer) {
+        jdbc.query(con -> {
+            PreparedStatement ps = con.prepareStatement(SCAN_SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(Integer.MIN_VALUE);   // MySQL Connector/J: stream rows
+            return ps;
+        }, rs -> {
+            consumer.accept(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4));
+        });
+    }
+
+    private void clearLocked() {
+        ids = new long[1024];
+        names = new String[1024];
+        emails = new String[1024];
+        partitionOf = new Partition[1024];
+        docCount = 0;
+        freeDocs = new int[16];
+        freeCount = 0;
+        docById.clear();
+        partitions.clear();
+    }
+
+    /* -------------------- incremental updates -------------------- */
+
+    public void put(Long id, String name, String email, String owner) {
+        if (!enabled || id == null) return;
+        enqueue(new Change(Change.Kind.PUT, id, name, email, owner));
+    }
+
+    /**
+     * Re-indexes name/email of a student; the owner is kept. A student this node
+     * has not indexed yet is read from the database instead of being skipped.
+     */
+    public void update(Long id, String name, String email) {
+        if (!enabled || id == null) return;
+        enqueue(new Change(Change.Kind.UPDATE, id, name, email, null));
+    }
+
+    public void remove(Long id) {
+        if (!enabled || id == null) return;
+        enqueue(new Change(Change.Kind.REMOVE, id, null, null, null));
+    }
+
+    /*
+     * Changes are collected per transaction (bound to it under this instance as key)
+     * and applied after commit by a single synchronization, so a 1000-row bulk write
+     * takes the write lock once and sends one message. Without a transaction they
+     * apply right away.
+     */
+    @SuppressWarnings("unchecked")
+    private void enqueue(Change change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply(List.of(change));
+            return;
+        }
+        List<Change> pending = (List<Change>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            List<Change> changes = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(this, changes);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(changes);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(StudentTypeahead.this);
+                }
+            });
+            pending = changes;
+        }
+        pending.add(change);
+    }
+
+    private void apply(List<Change> changes) {
+        Set<Long> touched = new LinkedHashSet<>();
+        List<Long> unknown = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            for (Change c : changes) {
+                touched.add(c.id());
+                switch (c.kind()) {
+                    case PUT -> putLocked(c.id(), c.name(), c.email(), c.owner());
+                    case REMOVE -> removeLocked(c.id());
+                    case UPDATE -> {
+                        int doc = docById.get(c.id());
+                        if (doc != NO_DOC) {
+                            putLocked(c.id(), c.name(), c.email(), partitionOf[doc].owner);
+                        } else {
+                            unknown.add(c.id());
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (!unknown.isEmpty()) {
+            try {
+                reload(unknown);
+            } catch (RuntimeException e) {
+                log.warn("Could not load {} updated students into the typeahead: {}", unknown.size(), e.getMessage());
+            }
+        }
+        publish(touched);
+    }
+
+    private record Change(Kind kind, long id, String name, String email, String owner) {
+        enum Kind { PUT, UPDATE, REMOVE }
+    }
+
+    /* -------------------- cross-node sync -------------------- */
+
+    private void publish(Collection<Long> ids) {
+        try {
+            redis.convertAndSend(CHANNEL, nodeId + "|"
+                    + ids.stream().map(String::valueOf).collect(Collectors.joining(",")));
+        } catch (RuntimeException e) {
+            // other nodes catch up on their next rebuild
+            log.warn("Could not broadcast typeahead changes for {} students: {}", ids.size(), e.getMessage());
+        }
+    }
+
+    private void onChange(String payload) {
+        int sep = payload.indexOf('|');
+        if (sep <= 0 || payload.substring(0, sep).equals(nodeId)) return;
+        try {
+            reload(Arrays.stream(payload.substring(sep + 1).split(",")).map(Long::valueOf).toList());
+        } catch (RuntimeException e) {
+            log.warn("Could not apply typeahead changes from {}: {}", payload.substring(0, sep), e.getMessage());
+        }
+    }
+
+    // the database is the source of truth: index the rows as they are now, and drop the ones that are gone
+    private void reload(List<Long> ids) {
+        for (int i = 0; i < ids.size(); i += RELOAD_BATCH) {
+            List<Long> chunk = ids.subList(i, Math.min(ids.size(), i + RELOAD_BATCH));
+            List<Row> rows = jdbc.query(
+                    SCAN_SQL + " WHERE s.id IN (" + String.join(",", Collections.nCopies(chunk.size(), "?")) + ")",
+                    (rs, n) -> new Row(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4)),
+                    chunk.toArray());
+            lock.writeLock().lock();
+            try {
+                chunk.forEach(this::removeLocked);
+                for (Row r : rows) putLocked(r.id(), r.name(), r.email(), r.owner());
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private record Row(long id, String name, String email, String owner) {}
+
+    @FunctionalInterface
+    private interface RowConsumer {
+        void accept(long id, String name, String email, String owner);
+    }
+
+    private void putLocked(long id, String name, String email, String owner) {
+        removeLocked(id);
+        int doc = freeCount > 0 ? freeDocs[--freeCount] : newDoc();
+        Partition p = partitions.computeIfAbsent(owner, Partition::new);
+        ids[doc] = id;
+        names[doc] = name;
+        emails[doc] = email;
+        partitionOf[doc] = p;
+        docById.put(id, doc);
+        for (long g : grams(name, email)) {
+            p.add(g, doc);
+        }
+    }
+
+    private void removeLocked(long id) {
+        int doc = docById.remove(id);
+        if (doc == NO_DOC) return;
+        Partition p = partitionOf[doc];
+        for (long g : grams(names[doc], emails[doc])) {
+            p.remove(g, doc);
+        }
+        names[doc] = null;
+        emails[doc] = null;
+        partitionOf[doc] = null;
+        if (freeCount == freeDocs.length) freeDocs = Arrays.copyOf(freeDocs, freeCount * 2);
+        freeDocs[freeCount++] = doc;
+    }
+
+    private int newDoc() {
+        if (docCount == ids.length) {
+            int cap = ids.length * 2;
+            ids = Arrays.copyOf(ids, cap);
+            names = Arrays.copyOf(names, cap);
+            emails = Arrays.copyOf(emails, cap);
+            partitionOf = Arrays.copyOf(partitionOf, cap);
+        }
+        return docCount++;
+    }
+
+    /* -------------------- queries -------------------- */
+
+    /**
+     * @param owner null for admins (all partitions); otherwise only that owner's students
+     */
+    public List<Hit> suggest(String query, String owner, int limit) {
+        if (!enabled || query == null || query.isBlank() || limit <= 0) return List.of();
+        String q = query.trim();
+        long[] grams = queryGrams(q);
+        List<Hit> hits = new ArrayList<>(Math.min(limit, 64));
+
+        lock.readLock().lock();
+        try {
+            if (owner != null) {
+                Partition p = partitions.get(owner);
+                if (p != null) collect(p, grams, q, limit, false, hits);
+            } else {
+                for (Partition p : partitions.values()) {
+                    if (hits.size() >= limit) break;
+                    collect(p, grams, q, limit, true, hits);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return hits;
+    }
+
+    private void collect(Partition p, long[] grams, String q, int limit, boolean withOwner, List<Hit> hits) {
+        int[] candidates = p.intersect(grams);
+        boolean prefix = q.length() < 3;
+        // newest documents first
+        for (int i = candidates.length - 1; i >= 0 && hits.size() < limit; i--) {
+            int doc = candidates[i];
+            if (matches(names[doc], q, prefix) || matches(emails[doc], q, prefix)) {
+                hits.add(new Hit(ids[doc], names[doc], emails[doc], withOwner ? p.owner : null));
+            }
+        }
+    }
+
+    private static boolean matches(String value, String q, boolean prefix) {
+        if (value == null) return false;
+        if (prefix) return value.regionMatches(true, 0, q, 0, q.length());
+        for (int i = 0; i + q.length() <= value.length(); i++) {
+            if (value.regionMatches(true, i, q, 0, q.length())) return true;
+        }
+        return false;
+    }
+
+    public Stats stats() {
+        lock.readLock().lock();
+        try {
+            long bytes = 16L + ids.length * 8L + 3 * (16L + ids.length * 4L) + 16L + freeDocs.length * 4L
+                    + docById.memoryBytes();
+            for (int d = 0; d < docCount; d++) {
+                bytes += stringBytes(names[d]) + stringBytes(emails[d]);
+            }
+            long grams = 0;
+            for (Partition p : partitions.values()) {
+                bytes += p.memoryBytes();
+                grams += p.gramCount();
+            }
+            return new Stats(enabled, docById.size(), partitions.size(), grams, bytes);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // compact strings: header + value array; close enough for Latin-1 text
+    private static long stringBytes(String s) {
+        return s == null ? 0 : 40L + s.length();
+    }
+
+    /* -------------------- grams -------------------- */
+
+    // one- and two-char queries hit the padded prefix grams; longer ones are plain trigrams
+    private static long[] queryGrams(String q) {
+        if (q.length() == 1) return new long[]{pack(PAD, PAD, q.charAt(0))};
+        if (q.length() == 2) return new long[]{pack(PAD, q.charAt(0), q.charAt(1))};
+        long[] out = new long[q.length() - 2];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = pack(q.charAt(i), q.charAt(i + 1), q.charAt(i + 2));
+        }
+        return distinct(out, out.length);
+    }
+
+    private static long[] grams(String name, String email) {
+        int n = padded(name) + padded(email);
+        long[] out = new long[n];
+        int k = addGrams(name, out, 0);
+        addGrams(email, out, k);
+        return distinct(out, n);
+    }
+
+    private static int padded(String v) {
+        return v == null || v.isEmpty() ? 0 : v.length();
+    }
+
+    // "ab" -> {PAD PAD a, PAD a b}; "abcd" -> {PAD PAD a, PAD a b, abc, bcd}
+    private static int addGrams(String v, long[] out, int k) {
+        if (v == null || v.isEmpty()) return k;
+        char p1 = PAD, p2 = PAD;
+        for (int i = 0; i < v.length(); i++) {
+            char c = v.charAt(i);
+            out[k++] = pack(p1, p2, c);
+            p1 = p2;
+            p2 = c;
+        }
+        return k;
+    }
+
+    private static long pack(char a, char b, char c) {
+        return ((long) Character.toLowerCase(a) << 32) | ((long) Character.toLowerCase(b) << 16)
+                | Character.toLowerCase(c);
+    }
+
+    private static long[] distinct(long[] values, int n) {
+        Arrays.sort(values, 0, n);
+        int k = 0;
+        for (int i = 0; i < n; i++) {
+            if (k == 0 || values[k - 1] != values[i]) values[k++] = values[i];
+        }
+        return k == values.length ? values : Arrays.copyOf(values, k);
+    }
+
+    /* -------------------- per-owner partition -------------------- */
+
+    private static final class Partition {
+        final String owner;
+        final LongIntMap slotByGram = new LongIntMap(256, -1);
+        int[][] postings = new int[256][];
+        int[] sizes = new int[256];
+        int slots;
+
+        Partition(String owner) {
+            this.owner = owner;
+        }
+
+        void add(long gram, int doc) {
+            int slot = slotByGram.get(gram);
+            if (slot < 0) {
+                if (slots == postings.length) {
+                    postings = Arrays.copyOf(postings, slots * 2);
+                    sizes = Arrays.copyOf(sizes, slots * 2);
+                }
+                slot = slots++;
+                postings[slot] = new int[4];
+                slotByGram.put(gram, slot);
+            }
+            int[] list = postings[slot];
+            int size = sizes[slot];
+            int at = Arrays.binarySearch(list, 0, size, doc);
+            if (at >= 0) return;
+            at = -at - 1;
+            if (size == list.length) {
+                list = postings[slot] = Arrays.copyOf(list, size * 2);
+            }
+            System.arraycopy(list, at, list, at + 1, size - at);
+            list[at] = doc;
+            sizes[slot] = size + 1;
+        }
+
+        void remove(long gram, int doc) {
+            int slot = slotByGram.get(gram);
+            if (slot < 0) return;
+            int[] list = postings[slot];
+            int size = sizes[slot];
+            int at = Arrays.binarySearch(list, 0, size, doc);
+            if (at < 0) return;
+            System.arraycopy(list, at + 1, list, at, size - at - 1);
+            sizes[slot] = size - 1;
+        }
+
+        // sorted doc numbers present in every gram's posting list
+        int[] intersect(long[] grams) {
+            int[] order = new int[grams.length];
+            for (int i = 0; i < grams.length; i++) {
+                int slot = slotByGram.get(grams[i]);
+                if (slot < 0 || sizes[slot] == 0) return new int[0];
+                order[i] = slot;
+            }
+            // smallest list first keeps the working set small (insertion sort: a handful of grams)
+            for (int i = 1; i < order.length; i++) {
+                int slot = order[i];
+                int j = i - 1;
+                while (j >= 0 && sizes[order[j]] > sizes[slot]) {
+                    order[j + 1] = order[j];
+                    j--;
+                }
+                order[j + 1] = slot;
+            }
+
+            int first = order[0];
+            int[] acc = Arrays.copyOf(postings[first], sizes[first]);
+            int n = acc.length;
+            for (int i = 1; i < order.length && n > 0; i++) {
+                int[] list = postings[order[i]];
+                int size = sizes[order[i]];
+                int k = 0;
+                for (int a = 0, b = 0; a < n && b < size; ) {
+                    if (acc[a] == list[b]) {
+                        acc[k++] = acc[a++];
+                        b++;
+                    } else if (acc[a] < list[b]) {
+                        a++;
+                    } else {
+                        b++;
+                    }
+                }
+                n = k;
+            }
+            return n == acc.length ? acc : Arrays.copyOf(acc, n);
+        }
+
+        long gramCount() {
+            long live = 0;
+            for (int i = 0; i < slots; i++) if (sizes[i] > 0) live++;
+            return live;
+        }
+
+        long memoryBytes() {
+            long bytes = slotByGram.memoryBytes() + 16L + postings.length * 4L + 16L + sizes.length * 4L;
+            for (int i = 0; i < slots; i++) bytes += 16L + postings[i].length * 4L;
+            return bytes;
+        }
+    }
+}
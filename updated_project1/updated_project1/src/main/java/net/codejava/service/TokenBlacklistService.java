@@ -1,20 +1,119 @@
 package net.codejava.service;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import net.codejava.util.TimePartitionedBloomFilter;
+import net.codejava.util.VerifiedToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class TokenBlacklistService {
+    private static final Logger log = LoggerFactory.getLogger(TokenBlacklistService.class);
+
+    private static final String ACCESS_PREFIX = "bl:access:";
+    private static final String REVOKED_CHANNEL = "bl:revoked";
+
     private final StringRedisTemplate redis;
-    public TokenBlacklistService(StringRedisTemplate redis) { this.redis = redis; }
+
+    /*
+     * Node-local Bloom filter of revoked keys, partitioned by expiry so old
+     * partitions fall off by themselves. A negative answer skips Redis entirely;
+     * only probable positives pay for the hasKey round trip. Other nodes learn
+     * about revocations over pub/sub, and a periodic SCAN of bl:access:* covers
+     * startup and any messages missed while disconnected. Until the first scan
+     * completes every check goes to Redis.
+     */
+    private final boolean bloomEnabled;
+    private final TimePartitionedBloomFilter bloom;
+    private volatile boolean bloomReady;
+    private final Counter bloomNegatives;
+    private final Counter redisChecks;
+
+    public TokenBlacklistService(StringRedisTemplate redis,
+                                 RedisMessageListenerContainer listenerContainer,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${app.blacklist.bloom.enabled:true}") boolean bloomEnabled,
+                                 @Value("${app.blacklist.bloom.partition:5m}") Duration partition,
+                                 @Value("${app.blacklist.bloom.expected-per-partition:10000}") int expectedPerPartition,
+                                 @Value("${app.blacklist.bloom.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.redis = redis;
+        this.bloomEnabled = bloomEnabled;
+        this.bloom = new TimePartitionedBloomFilter(partition.toMillis(), expectedPerPartition, falsePositiveRate);
+        this.bloomNegatives = Counter.builder("blacklist.checks").tag("source", "bloom").register(meterRegistry);
+        this.redisChecks = Counter.builder("blacklist.checks").tag("source", "redis").register(meterRegistry);
+
+        if (bloomEnabled) {
+            listenerContainer.addMessageListener(
+                    (message, pattern) -> onRevoked(new String(message.getBody(), StandardCharsets.UTF_8)),
+                    new ChannelTopic(REVOKED_CHANNEL));
+        }
+    }
+
+    // Prefer JTI; fallback to token hash
+    public static String accessKey(VerifiedToken token) {
+        String jti = token.jti();
+        return ACCESS_PREFIX + (jti != null ? jti : Integer.toHexString(token.token().hashCode()));
+    }
 
     public void blacklist(String key, long secondsToLive) {
         redis.opsForValue().set(key, "1", Duration.ofSeconds(secondsToLive));
+        if (bloomEnabled) {
+            long expiresAt = System.currentTimeMillis() + secondsToLive * 1000;
+            bloom.put(key, expiresAt);
+            redis.convertAndSend(REVOKED_CHANNEL, key + "|" + expiresAt);
+        }
     }
     public boolean isBlacklisted(String key) {
+        if (bloomEnabled && bloomReady && !bloom.mightContain(key)) {
+            bloomNegatives.increment();
+            return false;
+        }
+        redisChecks.increment();
         Boolean exists = redis.hasKey(key);
         return exists != null && exists;
     }
+
+    /* -------------------- bloom sync -------------------- */
+
+    private void onRevoked(String payload) {
+        int sep = payload.lastIndexOf('|');
+        if (sep <= 0) return;
+        try {
+            bloom.put(payload.substring(0, sep), Long.parseLong(payload.substring(sep + 1)));
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring malformed revocation message: {}", payload);
+        }
+    }
+
+    @Scheduled(initialDelay = 0, fixedDelayString = "${app.blacklist.bloom.resync-interval:60s}")
+    public void resyncBloom() {
+        if (!bloomEnabled) return;
+        ScanOptions options = ScanOptions.scanOptions().match(ACCESS_PREFIX + "*").count(1000).build();
+        try (Cursor<String> cursor = redis.scan(options)) {
+            while (cursor.hasNext()) {
+                String key = cursor.next();
+                Long ttlMs = redis.getExpire(key, TimeUnit.MILLISECONDS);
+                if (ttlMs != null && ttlMs > 0) {
+                    bloom.put(key, System.currentTimeMillis() + ttlMs);
+                }
+            }
+            bloomReady = true;
+        } catch (RuntimeException e) {
+            // keep answering from Redis until a scan succeeds
+            log.warn("Blacklist bloom resync failed: {}", e.getMessage());
+        }
+    }
 }
@@ -0,0 +1,82 @@
+package net.codejava.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import net.codejava.util.VerifiedToken;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Date;
+
+/**
+ * "Not-before" epochs for bulk revocation. Every access token issued before the
+ * user's epoch (or the global epoch) is rejected, so revoking all of a user's
+ * tokens is a single Redis write instead of one bl:access key per token.
+ *
+ * Epochs are cached locally for a few seconds; a change is broadcast on
+ * auth:epoch so every node drops its cached value right away.
+ *
+ * Epochs are whole epoch seconds, like JWT iat. A token issued in the same second
+ * as the revocation is still accepted. That leaves a window of under a second
+ * (plus any clock skew between nodes) for tokens minted just before the revoke. In
+ * exchange, a login straight after a lockout or revoke-all is never rejected.
+ */
+@Service
+public class TokenEpochService {
+    private static final String USER_PREFIX = "auth:nbf:user:";
+    private static final String GLOBAL_KEY = "auth:nbf:global";
+    private static final String CHANNEL = "auth:epoch";
+
+    private final StringRedisTemplate redis;
+    private final LoadingCache<String, Long> epochs;
+
+    public TokenEpochService(StringRedisTemplate redis,
+                             RedisMessageListenerContainer listenerContainer,
+                             @Value("${app.token-epoch.cache-ttl:10s}") Duration cacheTtl) {
+        this.redis = redis;
+        this.epochs = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterWrite(cacheTtl)
+                .build(this::read);
+        listenerContainer.addMessageListener(
+                (message, pattern) -> epochs.invalidate(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(CHANNEL));
+    }
+
+    public boolean isRevoked(VerifiedToken token) {
+        Date iat = token.issuedAt();
+        if (iat == null) return false;
+        long notBefore = Math.max(epochs.get(GLOBAL_KEY), epochs.get(USER_PREFIX + token.subject()));
+        return iat.getTime() / 1000 < notBefore;
+    }
+
+    /** Invalidates every access token issued to the user so far. */
+    public void revokeAll(String username) {
+        advance(USER_PREFIX + username);
+    }
+
+    /** Emergency switch: invalidates every access token issued so far, for everyone. */
+    public void revokeAllGlobally() {
+        advance(GLOBAL_KEY);
+    }
+
+    private void advance(String key) {
+        // Keys only need to outlive the longest-lived access token; a day is plenty
+        redis.opsForValue().set(key, Long.toString(System.currentTimeMillis() / 1000), Duration.ofDays(1));
+        epochs.invalidate(key);
+        redis.convertAndSend(CHANNEL, key);
+    }
+
+    private Long read(String key) {
+        String v = redis.opsForValue().get(key);
+        if (v == null) return 0L;
+        long epoch = Long.parseLong(v);
+        // epochs written in milliseconds before the switch to seconds; they expire within a day
+        return epoch > 100_000_000_000L ? epoch / 1000 : epoch;
+    }
+}
@@ -0,0 +1,360 @@
+package net.codejava.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import jakarta.annotation.PreDestroy;
+import net.codejava.util.Csv;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.util.StringUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bulk user onboarding for admins. Input is read as a stream (JSON array or CSV)
+ * and processed in chunks: one set-based duplicate check per chunk, passwords
+ * hashed in parallel, then users and user_roles written with JDBC batches in one
+ * transaction per chunk.
+ */
+@Service
+public class UserProvisioningService {
+
+    public record NewUser(String username, String password, Set<String> roles) {}
+
+    public enum Status { CREATED, DUPLICATE, INVALID, FAILED }
+
+    public record RowResult(int row, String username, Status status, String message) {}
+
+    public record ProvisioningReport(int total, int created, List<RowResult> rows) {}
+
+    private final JdbcTemplate jdbc;
+    private final NamedParameterJdbcTemplate namedJdbc;
+    private final TransactionTemplate tx;
+    private final PasswordEncoder encoder;
+    private final ObjectMapper mapper;
+    private final int chunkSize;
+    private final ExecutorService hashPool;
+
+    public UserProvisioningService(JdbcTemplate jdbc,
+                                   NamedParameterJdbcTemplate namedJdbc,
+                                   TransactionTemplate tx,
+                                   PasswordEncoder encoder,
+                                   ObjectMapper mapper,
+                                   @Value("${app.bulk-provision.chunk-size:500}") int chunkSize,
+                                   @Value("${app.bulk-provision.hash-threads:0}") int hashThreads) {
+        this.jdbc = jdbc;
+        this.namedJdbc = namedJdbc;
+        this.tx = tx;
+        this.encoder = encoder;
+        this.mapper = mapper;
+        this.chunkSize = chunkSize;
+        // Feeds the shared bounded hashing pool; sized so bulk work cannot flood its queue
+        int threads = hashThreads > 0 ? hashThreads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger seq = new AtomicInteger();
+        this.hashPool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "bulk-hash-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        hashPool.shutdown();
+    }
+
+    /* -------------------- input formats -------------------- */
+
+    /**
+     * JSON array of users. A row that does not bind is reported as invalid and the rest still
+     * run; malformed JSON ends the upload at that row, and the rows before it are reported.
+     */
+    public ProvisioningReport provisionJson(InputStream in) throws IOException {
+        try (MappingIterator<NewUser> it = mapper.readerFor(NewUser.class).readValues(in)) {
+            return provision(new JsonUsers(it));
+        }
+    }
+
+    /** CSV: {@code username,password,roles} with roles separated by '|'; header row optional. */
+    public ProvisioningReport provisionCsv(InputStream in) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            return provision(new CsvUsers(reader));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /* -------------------- pipeline -------------------- */
+
+    private ProvisioningReport provision(Rows input) {
+        List<RowResult> results = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        List<Pending> chunk = new ArrayList<>(chunkSize);
+        int row = 0;
+        while (input.hasNext()) {
+            NewUser u = input.next();
+            row++;
+            String invalid = u != null ? validate(u) : input.unreadable();
+            if (invalid != null) {
+                results.add(new RowResult(row, u != null ? u.username() : null, Status.INVALID, invalid));
+            } else if (!seen.add(u.username().toLowerCase())) {
+                results.add(new RowResult(row, u.username(), Status.DUPLICATE, "Repeated in upload"));
+            } else {
+                chunk.add(new Pending(row, u));
+                if (chunk.size() >= chunkSize) {
+                    results.addAll(processChunk(chunk));
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            results.addAll(processChunk(chunk));
+        }
+        results.sort((a, b) -> Integer.compare(a.row(), b.row()));
+        int created = (int) results.stream().filter(r -> r.status() == Status.CREATED).count();
+        return new ProvisioningReport(row, created, results);
+    }
+
+    private List<RowResult> processChunk(List<Pending> chunk) {
+        List<RowResult> results = new ArrayList<>(chunk.size());
+
+        // one set-based duplicate check per chunk; usernames compare case-insensitively, like the column
+        List<String> names = chunk.stream().map(p -> p.user().username()).toList();
+        Set<String> existing = new HashSet<>();
+        namedJdbc.query("SELECT username FROM users WHERE username IN (:names)", Map.of("names", names),
+                rs -> { existing.add(rs.getString(1).toLowerCase()); });
+
+        List<Pending> fresh = new ArrayList<>(chunk.size());
+        for (Pending p : chunk) {
+            if (existing.contains(p.user().username().toLowerCase())) {
+                results.add(new RowResult(p.row(), p.user().username(), Status.DUPLICATE, "Username already taken"));
+            } else {
+                fresh.add(p);
+            }
+        }
+
+        // hash in parallel
+        List<CompletableFuture<String>> hashes = fresh.stream()
+                .map(p -> CompletableFuture.supplyAsync(() -> encoder.encode(p.user().password()), hashPool))
+                .toList();
+        List<Hashed> ready = new ArrayList<>(fresh.size());
+        for (int i = 0; i < fresh.size(); i++) {
+            Pending p = fresh.get(i);
+            try {
+                ready.add(new Hashed(p, hashes.get(i).join()));
+            } catch (RuntimeException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                results.add(new RowResult(p.row(), p.user().username(), Status.FAILED, cause.getMessage()));
+            }
+        }
+        if (ready.isEmpty()) return results;
+
+        try {
+            tx.executeWithoutResult(status -> insertBatch(ready));
+            ready.forEach(h -> results.add(new RowResult(h.pending().row(), h.pending().user().username(),
+                    Status.CREATED, null)));
+        } catch (DataIntegrityViolationException e) {
+            // lost a race with a concurrent signup (or some other constraint): settle the chunk row by row
+            for (Hashed h : ready) {
+                results.add(insertSingle(h));
+            }
+        }
+        return results;
+    }
+
+    // users in one batch, ids read back in one query (IDENTITY keys), then roles in one batch
+    private void insertBatch(List<Hashed> rows) {
+        jdbc.batchUpdate("INSERT INTO users (username, password) VALUES (?, ?)",
+                rows, rows.size(), (ps, h) -> {
+                    ps.setString(1, h.pending().user().username());
+                    ps.setString(2, h.hash());
+                });
+
+        Map<String, Long> ids = new HashMap<>();
+        namedJdbc.query("SELECT id, username FROM users WHERE username IN (:names)",
+                Map.of("names", rows.stream().map(h -> h.pending().user().username()).toList()),
+                rs -> { ids.put(rs.getString("username"), rs.getLong("id")); });
+
+        List<Object[]> roleRows = new ArrayList<>();
+        for (Hashed h : rows) {
+            Long id = ids.get(h.pending().user().username());
+            for (String role : rolesOf(h.pending().user())) {
+                roleRows.add(new Object[]{id, role});
+            }
+        }
+        jdbc.batchUpdate("INSERT INTO user_roles (user_id, role) VALUES (?, ?)", roleRows);
+    }
+
+    private RowResult insertSingle(Hashed h) {
+        String username = h.pending().user().username();
+        try {
+            tx.executeWithoutResult(status -> insertBatch(List.of(h)));
+            return new RowResult(h.pending().row(), username, Status.CREATED, null);
+        } catch (DuplicateKeyException e) {
+            return new RowResult(h.pending().row(), username, Status.DUPLICATE, "Username already taken");
+        } catch (DataIntegrityViolationException e) {
+            return new RowResult(h.pending().row(), username, Status.FAILED, e.getMostSpecificCause().getMessage());
+        }
+    }
+
+    /* -------------------- helpers -------------------- */
+
+    private static String validate(NewUser u) {
+        if (u == null) return "Empty row";
+        if (!StringUtils.hasText(u.username())) return "Username is required";
+        if (u.username().length() > 100) return "Username is longer than 100 characters";
+        if (!StringUtils.hasText(u.password())) return "Password is required";
+        if (u.roles() != null && u.roles().stream().anyMatch(r -> r.length() > 20)) {
+            return "Role is longer than 20 characters";
+        }
+        return null;
+    }
+
+    // same default as /signup
+    private static Set<String> rolesOf(NewUser u) {
+        return u.roles() == null || u.roles().isEmpty() ? Set.of("USER") : u.roles();
+    }
+
+    private record Pending(int row, NewUser user) {}
+
+    private record Hashed(Pending pending, String hash) {}
+
+    private interface Rows extends Iterator<NewUser> {
+        /** Why the last {@link #next()} returned null. */
+        default String unreadable() {
+            return "Empty row";
+        }
+    }
+
+    /** Streams NewUser rows from JSON; a row that cannot be read comes back as null. */
+    private static final class JsonUsers implements Rows {
+        private final MappingIterator<NewUser> it;
+        private String unreadable;
+        private String malformed;
+        private boolean ended;
+
+        JsonUsers(MappingIterator<NewUser> it) {
+            this.it = it;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (ended) return false;
+            if (malformed != null) return true;
+            try {
+                return it.hasNext();
+            } catch (RuntimeException e) {
+                // reported as one more row, then the stream ends
+                malformed = "Malformed JSON: " + messageOf(e);
+                return true;
+            }
+        }
+
+        @Override
+        public NewUser next() {
+            if (ended) throw new NoSuchElementException();
+            unreadable = "Empty row";
+            if (malformed != null) {
+                return end(malformed);
+            }
+            try {
+                return it.next();
+            } catch (RuntimeJsonMappingException e) {
+                // the iterator skips past the bad value, so the next row still reads
+                unreadable = "Unreadable row: " + messageOf(e);
+                return null;
+            } catch (NoSuchElementException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                // a syntax error leaves the parser with no known place to resume from
+                return end("Malformed JSON: " + messageOf(e));
+            }
+        }
+
+        @Override
+        public String unreadable() {
+            return unreadable;
+        }
+
+        private NewUser end(String reason) {
+            ended = true;
+            unreadable = reason;
+            return null;
+        }
+
+        private static String messageOf(RuntimeException e) {
+            return e.getCause() instanceof JsonProcessingException j ? j.getOriginalMessage() : e.getMessage();
+        }
+    }
+
+    /** Streams NewUser rows from CSV; handles double-quoted fields. */
+    private static final class CsvUsers implements Rows {
+        private final BufferedReader reader;
+        private String next;
+        private boolean first = true;
+
+        CsvUsers(BufferedReader reader) {
+            this.reader = reader;
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public NewUser next() {
+            if (next == null) throw new NoSuchElementException();
+            List<String> f = Csv.split(next);
+            advance();
+            Set<String> roles = new LinkedHashSet<>();
+            if (f.size() > 2) {
+                for (String r : f.get(2).split("\\|")) {
+                    if (StringUtils.hasText(r)) roles.add(r.trim());
+                }
+            }
+            return new NewUser(f.isEmpty() ? null : f.get(0).trim(), f.size() > 1 ? f.get(1) : null, roles);
+        }
+
+        private void advance() {
+            try {
+                do {
+                    next = reader.readLine();
+                    if (first && next != null && next.toLowerCase().startsWith("username,")) {
+                        next = reader.readLine();
+                    }
+                    first = false;
+                } while (next != null && next.isBlank());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
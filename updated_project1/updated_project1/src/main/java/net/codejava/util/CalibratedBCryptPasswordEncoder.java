@@ -0,0 +1,91 @@
+package net.codejava.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+
+/**
+ * BCrypt at a cost picked for this machine: {@link #calibrate} measures hash time
+ * at startup and takes the highest cost that stays within the latency target.
+ *
+ * upgradeEncoding() reports hashes below the target cost, and hashes two or more
+ * steps above it (too slow for this node). A single step above is tolerated so
+ * nodes of slightly different speed don't rehash the same user back and forth.
+ */
+public class CalibratedBCryptPasswordEncoder implements PasswordEncoder {
+    private static final Logger log = LoggerFactory.getLogger(CalibratedBCryptPasswordEncoder.class);
+
+    private final BCryptPasswordEncoder bcrypt;
+    private final int cost;
+
+    public CalibratedBCryptPasswordEncoder(int cost) {
+        this.cost = cost;
+        this.bcrypt = new BCryptPasswordEncoder(cost);
+    }
+
+    public int getCost() {
+        return cost;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return bcrypt.encode(rawPassword);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return bcrypt.matches(rawPassword, encodedPassword);
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        int stored = costOf(encodedPassword);
+        return stored > 0 && (stored < cost || stored >= cost + 2);
+    }
+
+    // $2a$12$<salt+hash> -> 12; -1 when not a BCrypt hash
+    static int costOf(String encoded) {
+        if (encoded == null || encoded.length() < 7 || encoded.charAt(0) != '$' || encoded.charAt(6) != '$') {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(encoded.substring(4, 6));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /* -------------------- calibration -------------------- */
+
+    /**
+     * Highest cost in [minCost, maxCost] whose measured hash time is within target.
+     * Each step doubles the work, so this stops after a handful of hashes.
+     */
+    public static int calibrate(Duration target, int minCost, int maxCost) {
+        long targetNanos = target.toNanos();
+        int cost = minCost;
+        long took = measure(cost);
+        while (cost < maxCost && took * 2 <= targetNanos) {
+            cost++;
+            took = measure(cost);
+        }
+        log.info("BCrypt calibrated to cost {} ({} ms per hash, target {} ms)",
+                cost, took / 1_000_000, target.toMillis());
+        return cost;
+    }
+
+    // best of two runs so JIT warm-up does not inflate the first sample
+    private static long measure(int cost) {
+        BCryptPasswordEncoder probe = new BCryptPasswordEncoder(cost);
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 2; i++) {
+            long start = System.nanoTime();
+            probe.encode("calibration-probe");
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+}
@@ -0,0 +1,13 @@
+package net.codejava.util;
+
+import org.springframework.security.core.AuthenticatedPrincipal;
+
+/**
+ * Principal rebuilt from access-token claims in stateless-authorities mode.
+ * {@code Authentication.getName()} resolves to the username, same as with UserDetails.
+ */
+public record JwtPrincipal(Long id, String username) implements AuthenticatedPrincipal {
+
+    @Override
+    public String getName() { return username; }
+}
@@ -2,10 +2,14 @@ package net.codejava.util;
 
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import net.codejava.model.AppUser;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.security.Key;
+import java.util.Collection;
 import java.util.Date;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.function.Function;
 
@@ -23,14 +27,68 @@ public class JwtUtil {
 
     public static final long RENEW_WINDOW_MS = 2 * 60 * 1000L;
 
+    // Compact claim names used in stateless-authorities mode
+    public static final String CLAIM_USER_ID = "uid";
+    public static final String CLAIM_ROLES = "rol";
+    public static final String CLAIM_ROLE_VERSION = "rv";
+
+    /** Request attribute under which {@code JwtFilter} stores the {@link VerifiedToken}. */
+    public static final String VERIFIED_TOKEN_ATTR = JwtUtil.class.getName() + ".VERIFIED_TOKEN";
+
     private final Key key = Keys.hmacShaKeyFor(SECRET.getBytes());
 
+    // JwtParser is immutable and thread-safe once built; share one instance
+    private final JwtParser parser = Jwts.parserBuilder()
+            .setSigningKey(key)
+            .build();
+
+    /*
+     * When enabled, access tokens carry the user id and roles and JwtFilter builds the
+     * Authentication from the claims instead of loading the user on every request.
+     */
+    private final boolean statelessAuthorities;
+
+    public JwtUtil(@Value("${app.jwt.stateless-authorities:false}") boolean statelessAuthorities) {
+        this.statelessAuthorities = statelessAuthorities;
+    }
+
+    public boolean isStatelessAuthorities() {
+        return statelessAuthorities;
+    }
+
     /* -------- create -------- */
     public String generateToken(String username) {
         return generateToken(username, EXPIRATION_MS);
     }
 
 
+    /**
+     * Issues an access token for the user. Roles, user id and role version are only
+     * embedded in stateless-authorities mode; otherwise the token keeps the plain format.
+     */
+    public String generateToken(AppUser user, long roleVersion) {
+        if (!statelessAuthorities) {
+            return generateToken(user.getUsername());
+        }
+        Date now = new Date();
+        return Jwts.builder()
+                .setId(UUID.randomUUID().toString())
+                .setSubject(user.getUsername())
+                .claim(CLAIM_USER_ID, user.getId())
+                .claim(CLAIM_ROLES, joinRoles(user.getRoles()))
+                .claim(CLAIM_ROLE_VERSION, roleVersion)
+                .setIssuedAt(now)
+                .setExpiration(new Date(now.getTime() + EXPIRATION_MS))
+                .signWith(key, SignatureAlgorithm.HS256)
+                .compact();
+    }
+
+    // "ADMIN,USER" is a lot shorter than a JSON array of ROLE_ prefixed strings
+    private static String joinRoles(Collection<String> roles) {
+        return String.join(",", roles);
+    }
+
+
     public String generateToken(String username, long ttlMs) {
         Date now = new Date();
         Date expiry = new Date(now.getTime() + ttlMs);
@@ -67,11 +125,21 @@ public class JwtUtil {
     }
 
     private Claims parseClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        return parser.parseClaimsJws(token).getBody();
+    }
+
+    /* -------- verify -------- */
+
+    /**
+     * Parses and verifies the token exactly once. Empty when the signature,
+     * format or expiry check fails.
+     */
+    public Optional<VerifiedToken> verify(String token) {
+        try {
+            return Optional.of(new VerifiedToken(token, parseClaims(token)));
+        } catch (JwtException | IllegalArgumentException e) {
+            return Optional.empty();
+        }
     }
 
 
@@ -0,0 +1,19 @@
+package net.codejava.util;
+
+/**
+ * Thrown when the password hashing pool is saturated. Mapped to 503 with a
+ * Retry-After header by {@link GlobalExceptionHandler}.
+ */
+public class PasswordHashingBusyException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public PasswordHashingBusyException(long retryAfterSeconds) {
+        super("Password hashing is at capacity, retry later");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
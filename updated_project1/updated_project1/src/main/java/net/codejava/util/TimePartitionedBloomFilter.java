@@ -0,0 +1,137 @@
+package net.codejava.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter split into fixed time partitions keyed by the entry's expiry.
+ * An entry lives in the partition its expiry falls into, so once a partition's
+ * window has passed every entry in it has expired and the whole partition is
+ * dropped - no per-entry deletes needed.
+ *
+ * Thread-safe; bits are set with CAS and partitions are created lazily.
+ */
+public class TimePartitionedBloomFilter {
+
+    private final long partitionMs;
+    private final int bitsPerPartition;
+    private final int hashFunctions;
+    private final ConcurrentNavigableMap<Long, Partition> partitions = new ConcurrentSkipListMap<>();
+
+    /**
+     * @param partitionMs         width of a partition; match the access-token lifetime
+     * @param expectedPerPartition expected insertions per partition
+     * @param falsePositiveRate   target false-positive probability at that load
+     */
+    public TimePartitionedBloomFilter(long partitionMs, int expectedPerPartition, double falsePositiveRate) {
+        this.partitionMs = partitionMs;
+        long bits = (long) Math.ceil(-expectedPerPartition * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bitsPerPartition = (int) Math.max(64, Math.min(bits, Integer.MAX_VALUE - 63));
+        this.hashFunctions = Math.max(1, (int) Math.round((double) bitsPerPartition / expectedPerPartition * Math.log(2)));
+    }
+
+    public void put(String value, long expiresAtMillis) {
+        if (expiresAtMillis <= System.currentTimeMillis()) return;
+        long bucket = expiresAtMillis / partitionMs;
+        partitions.computeIfAbsent(bucket, b -> new Partition(bitsPerPartition)).put(value);
+        prune();
+    }
+
+    /** False means definitely absent; true means "ask the source of truth". */
+    public boolean mightContain(String value) {
+        prune();
+        for (Partition p : partitions.values()) {
+            if (p.mightContain(value)) return true;
+        }
+        return false;
+    }
+
+    public int partitionCount() {
+        return partitions.size();
+    }
+
+    public void clear() {
+        partitions.clear();
+    }
+
+    // A partition is dead once its whole window lies in the past
+    private void prune() {
+        long oldestLive = System.currentTimeMillis() / partitionMs;
+        for (Map.Entry<Long, Partition> e = partitions.firstEntry();
+             e != null && e.getKey() < oldestLive;
+             e = partitions.firstEntry()) {
+            partitions.remove(e.getKey(), e.getValue());
+        }
+    }
+
+    /* -------------------- single partition -------------------- */
+
+    private final class Partition {
+        private final AtomicLongArray words;
+        private final int bits;
+
+        Partition(int bits) {
+            this.bits = bits;
+            this.words = new AtomicLongArray((bits + 63) >>> 6);
+        }
+
+        void put(String value) {
+            long h1 = hash(value);
+            long h2 = mix(h1);
+            for (int i = 0; i < hashFunctions; i++) {
+                set(index(h1 + i * h2));
+            }
+        }
+
+        boolean mightContain(String value) {
+            long h1 = hash(value);
+            long h2 = mix(h1);
+            for (int i = 0; i < hashFunctions; i++) {
+                if (!get(index(h1 + i * h2))) return false;
+            }
+            return true;
+        }
+
+        private int index(long combined) {
+            return (int) ((combined & Long.MAX_VALUE) % bits);
+        }
+
+        private void set(int bit) {
+            int w = bit >>> 6;
+            long mask = 1L << bit;
+            long prev;
+            do {
+                prev = words.get(w);
+                if ((prev & mask) != 0) return;
+            } while (!words.compareAndSet(w, prev, prev | mask));
+        }
+
+        private boolean get(int bit) {
+            return (words.get(bit >>> 6) & (1L << bit)) != 0;
+        }
+    }
+
+    /* -------------------- hashing (double hashing, Kirsch-Mitzenmacher) -------------------- */
+
+    // 64-bit FNV-1a over the UTF-16 code units
+    private static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    // murmur3 fmix64 finaliser
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb93fe53e5a1bL;
+        h ^= h >>> 33;
+        return h;
+    }
+}
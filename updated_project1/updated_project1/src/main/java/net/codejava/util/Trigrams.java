@@ -0,0 +1,44 @@
+package net.codejava.util;
+
+import java.text.Normalizer;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Distinct 3-character substrings of a value, lower-cased and with accents
+ * stripped. A string can only contain a search term if it contains every trigram
+ * of that term, which is what lets the student_grams table narrow a
+ * {@code LIKE '%term%'} to a few rows.
+ *
+ * Folding matches the accent- and case-insensitive column collation: "osé" and
+ * "ose" are one key in student_grams, so they must be one gram here too, both to
+ * avoid duplicate-key inserts and because LIKE treats them as equal.
+ */
+public final class Trigrams {
+
+    public static final int N = 3;
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    private Trigrams() {}
+
+    /** Empty for null or for values shorter than three characters. */
+    public static Set<String> of(String value) {
+        if (value == null) return Set.of();
+        String v = MARKS.matcher(Normalizer.normalize(value.toLowerCase(Locale.ROOT).trim(), Normalizer.Form.NFD))
+                .replaceAll("");
+        if (v.length() < N) return Set.of();
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + N <= v.length(); i++) {
+            grams.add(v.substring(i, i + N));
+        }
+        return grams;
+    }
+
+    /** True when a LIKE pattern built from the term would contain wildcards or escapes. */
+    public static boolean hasLikeWildcards(String term) {
+        return term.indexOf('%') >= 0 || term.indexOf('_') >= 0 || term.indexOf('\\') >= 0;
+    }
+}
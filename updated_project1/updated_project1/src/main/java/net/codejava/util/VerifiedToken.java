@@ -0,0 +1,47 @@
+package net.codejava.util;
+
+import io.jsonwebtoken.Claims;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Result of a single signature check on an access token. Everything the
+ * request pipeline needs is read from here instead of re-parsing the JWT.
+ */
+public record VerifiedToken(String token, Claims claims) {
+
+    public String subject() { return claims.getSubject(); }
+
+    public String jti() { return claims.getId(); }
+
+    public Date issuedAt() { return claims.getIssuedAt(); }
+
+    public Date expiration() { return claims.getExpiration(); }
+
+    public long remainingMillis() {
+        return expiration().getTime() - System.currentTimeMillis();
+    }
+
+    /* -------- stateless-authorities claims -------- */
+
+    public boolean hasAuthorities() {
+        return claims.get(JwtUtil.CLAIM_ROLES) != null;
+    }
+
+    public Long userId() {
+        Number id = claims.get(JwtUtil.CLAIM_USER_ID, Number.class);
+        return id != null ? id.longValue() : null;
+    }
+
+    public List<String> roles() {
+        String roles = claims.get(JwtUtil.CLAIM_ROLES, String.class);
+        if (roles == null || roles.isEmpty()) return List.of();
+        return List.of(roles.split(","));
+    }
+
+    public long roleVersion() {
+        Number v = claims.get(JwtUtil.CLAIM_ROLE_VERSION, Number.class);
+        return v != null ? v.longValue() : 0L;
+    }
+}
@@ -19,8 +19,36 @@ CREATE TABLE IF NOT EXISTS students (
   email VARCHAR(150) NOT NULL UNIQUE,
   age INT,
   user_id BIGINT NOT NULL,
-  KEY idx_students_user (user_id),
+  KEY idx_students_user (user_id, id),
   CONSTRAINT fk_students_user
     FOREIGN KEY (user_id) REFERENCES users(id)
     ON DELETE RESTRICT ON UPDATE CASCADE
 ) ENGINE=InnoDB;
+
+-- trigram index for name/email substring search (source 1 = name, 2 = email);
+-- grams are folded (lower case, no accents) by the application, so compare them exactly
+CREATE TABLE IF NOT EXISTS student_grams (
+  gram VARCHAR(3) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NOT NULL,
+  source TINYINT NOT NULL,
+  student_id BIGINT NOT NULL,
+  PRIMARY KEY (gram, source, student_id),
+  KEY idx_student_grams_student (student_id)
+) ENGINE=InnoDB;
+
+-- background student imports; committed_rows is the resume offset into the uploaded file
+CREATE TABLE IF NOT EXISTS student_import_jobs (
+  id VARCHAR(36) PRIMARY KEY,
+  owner VARCHAR(100) NOT NULL,
+  format VARCHAR(10) NOT NULL,
+  file_path VARCHAR(500) NOT NULL,
+  status VARCHAR(16) NOT NULL,
+  committed_rows BIGINT NOT NULL DEFAULT 0,
+  created BIGINT NOT NULL DEFAULT 0,
+  duplicates BIGINT NOT NULL DEFAULT 0,
+  invalid BIGINT NOT NULL DEFAULT 0,
+  error VARCHAR(500),
+  created_at DATETIME(6) NOT NULL,
+  updated_at DATETIME(6) NOT NULL,
+  KEY idx_import_jobs_status (status),
+  KEY idx_import_jobs_owner (owner, created_at)
+) ENGINE=InnoDB;
@@ -0,0 +1,127 @@
+package net.codejava.service;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import net.codejava.config.SecondLevelCacheConfig;
+import net.codejava.model.AppUser;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.listener.Topic;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockReset;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+
+@DataJpaTest(properties = {
+        // main config pins the MySQL dialect, whose InnoDB DDL the embedded H2 rejects
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.sql.init.mode=never",
+        "app.l2-cache.provider=local"
+})
+@Import({SecondLevelCacheConfig.class, EntityCacheSync.class})
+// the second-level cache is only filled and updated by committed transactions
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class EntityCacheSyncTests {
+
+    private static final String ROLES_REGION = AppUser.class.getName() + ".roles";
+
+    @MockitoBean
+    private StringRedisTemplate redis;
+
+    // the l2:evict listener is registered once, while the context starts
+    @MockitoBean(reset = MockReset.NONE)
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Autowired
+    private EntityCacheSync sync;
+
+    @Autowired
+    private EntityManager em;
+
+    @Autowired
+    private EntityManagerFactory emf;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void tearDown() {
+        jdbc.update("DELETE FROM user_roles");
+        jdbc.update("DELETE FROM users");
+        emf.getCache().evictAll();
+    }
+
+    @Test
+    void roleChangeIsBroadcastAndSeenOnReload() {
+        Long id = persistAdmin("carol");
+        assertEquals(Set.of("USER", "ADMIN"), rolesOf(id));
+        assertTrue(emf.unwrap(SessionFactory.class).getCache().containsCollection(ROLES_REGION, id));
+
+        // as AdminController.updateRoles
+        tx().executeWithoutResult(status -> {
+            em.find(AppUser.class, id).setRoles(new HashSet<>(Set.of("USER")));
+            sync.evictUser(id);
+        });
+
+        assertEquals(Set.of("USER"), rolesOf(id));
+        verify(redis).convertAndSend("l2:evict", "users:" + id);
+    }
+
+    @Test
+    void peerEvictionDropsStaleRoles() {
+        Long id = persistAdmin("dave");
+        assertEquals(Set.of("USER", "ADMIN"), rolesOf(id));
+
+        // demoted on another node: this node's region still has the old collection
+        jdbc.update("DELETE FROM user_roles WHERE user_id = ? AND role = 'ADMIN'", id);
+        assertEquals(Set.of("USER", "ADMIN"), rolesOf(id));
+
+        ArgumentCaptor<MessageListener> listener = ArgumentCaptor.forClass(MessageListener.class);
+        verify(listenerContainer).addMessageListener(listener.capture(), any(Topic.class));
+        listener.getValue().onMessage(new DefaultMessage("l2:evict".getBytes(StandardCharsets.UTF_8),
+                EntityCacheSync.message("users", List.of(id)).getBytes(StandardCharsets.UTF_8)), null);
+
+        assertEquals(Set.of("USER"), rolesOf(id));
+    }
+
+    private Long persistAdmin(String username) {
+        return tx().execute(status -> {
+            AppUser user = new AppUser(username, "{noop}pw", new HashSet<>(Set.of("USER", "ADMIN")));
+            em.persist(user);
+            return user.getId();
+        });
+    }
+
+    // a fresh persistence context each time, so roles come from the second-level cache or the database
+    private Set<String> rolesOf(Long id) {
+        return tx().execute(status -> new HashSet<>(em.find(AppUser.class, id).getRoles()));
+    }
+
+    private TransactionTemplate tx() {
+        return new TransactionTemplate(transactionManager);
+    }
+}
@@ -0,0 +1,99 @@
+package net.codejava.service;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import net.codejava.model.AppUser;
+import net.codejava.model.RefreshToken;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.util.Date;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = {
+        // main config pins the MySQL dialect, whose InnoDB DDL the embedded H2 rejects
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.sql.init.mode=never"
+})
+@Import(JpaRefreshTokenService.class)
+class JpaRefreshTokenServiceTests {
+
+    @Autowired
+    private JpaRefreshTokenService service;
+
+    @Autowired
+    private EntityManager em;
+
+    @Autowired
+    private EntityManagerFactory emf;
+
+    private Statistics stats;
+
+    @BeforeEach
+    void setUp() {
+        stats = emf.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    private String persistToken(String username, long expiresInMs) {
+        AppUser user = new AppUser(username, "{noop}pw", Set.of("USER"));
+        em.persist(user);
+        RefreshToken rt = new RefreshToken();
+        rt.setUser(user);
+        rt.setToken(username + "-token");
+        rt.setExpiryDate(new Date(System.currentTimeMillis() + expiresInMs));
+        em.persist(rt);
+        em.flush();
+        em.clear();
+        stats.clear();
+        return rt.getToken();
+    }
+
+    @Test
+    void rotateUsesAtMostTwoStatements() {
+        String old = persistToken("alice", 60_000);
+
+        Optional<RefreshToken> rotated = service.rotate(old);
+
+        assertTrue(rotated.isPresent());
+        assertNotEquals(old, rotated.get().getToken());
+        assertEquals("alice", rotated.get().getUser().getUsername());
+        assertEquals(Set.of("USER"), rotated.get().getUser().getRoles());
+        assertTrue(stats.getPrepareStatementCount() <= 2,
+                "refresh ran " + stats.getPrepareStatementCount() + " statements");
+    }
+
+    @Test
+    void rotateRejectsExpiredAndReusedTokens() {
+        String old = persistToken("bob", -1_000);
+        assertTrue(service.rotate(old).isEmpty());
+
+        String valid = persistToken("carol", 60_000);
+        assertTrue(service.rotate(valid).isPresent());
+        // the old value is gone after a successful rotation
+        assertTrue(service.rotate(valid).isEmpty());
+    }
+
+    @Test
+    void createReplacesExistingTokenInBoundedStatements() {
+        persistToken("dave", 60_000);
+
+        RefreshToken created = service.createRefreshToken("dave");
+        em.flush();
+
+        // user+roles select, bulk delete, insert
+        assertTrue(stats.getPrepareStatementCount() <= 3,
+                "login ran " + stats.getPrepareStatementCount() + " statements");
+        assertEquals(1L, em.createQuery("select count(r) from RefreshToken r where r.user.username = 'dave'",
+                Long.class).getSingleResult());
+        assertNotNull(created.getToken());
+    }
+}
@@ -0,0 +1,149 @@
+package net.codejava.service;
+
+import jakarta.persistence.EntityManager;
+import net.codejava.dto.StudentDTO;
+import net.codejava.model.AppUser;
+import net.codejava.model.Student;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static net.codejava.service.StudentBulkService.Status.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = {
+        // main config pins the MySQL dialect, whose InnoDB DDL the embedded H2 rejects
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.sql.init.mode=never",
+        "app.search-cache.enabled=false"
+})
+@Import({StudentBulkService.class, StudentTextIndex.class, StudentTypeahead.class,
+        SearchPageCache.class, EntityCacheSync.class, SimpleMeterRegistry.class})
+class StudentBulkServiceTests {
+
+    private static final Authentication ALICE = new TestingAuthenticationToken("alice", null, "ROLE_USER");
+
+    // the page cache and typeahead are disabled; these only satisfy their constructors
+    @MockitoBean
+    private StringRedisTemplate redis;
+
+    @MockitoBean
+    private ObjectMapper mapper;
+
+    @MockitoBean
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Autowired
+    private StudentBulkService service;
+
+    @Autowired
+    private EntityManager em;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    private Long aliceStudentId;
+    private Long bobStudentId;
+
+    @BeforeEach
+    void setUp() {
+        AppUser alice = new AppUser("alice", "{noop}pw", Set.of("USER"));
+        AppUser bob = new AppUser("bob", "{noop}pw", Set.of("USER"));
+        em.persist(alice);
+        em.persist(bob);
+        Student mine = new Student("mine", "mine@example.com", 20, alice);
+        Student theirs = new Student("theirs", "theirs@example.com", 21, bob);
+        em.persist(mine);
+        em.persist(theirs);
+        // the service reads and writes through JDBC
+        em.flush();
+        em.clear();
+        aliceStudentId = mine.getId();
+        bobStudentId = theirs.getId();
+    }
+
+    @Test
+    void createReportsEachItemInInputOrder() {
+        List<StudentDTO> items = Arrays.asList(
+                dto(null, "Ann", "ann@example.com", 20),
+                dto(null, "Ben", "ben@example.com", 21),
+                dto(null, "Ann again", "ANN@example.com", 22),
+                dto(null, "No age", "noage@example.com", null),
+                dto(null, "Taken", "theirs@example.com", 23),
+                null);
+
+        StudentBulkService.BulkReport report = service.create(items, ALICE);
+
+        assertEquals(6, report.total());
+        assertEquals(2, report.succeeded());
+        assertEquals(List.of(0, 1, 2, 3, 4, 5), report.items().stream().map(StudentBulkService.ItemResult::index).toList());
+        assertEquals(List.of(CREATED, CREATED, DUPLICATE, INVALID, DUPLICATE, INVALID),
+                report.items().stream().map(StudentBulkService.ItemResult::status).toList());
+        assertEquals("Email repeated in request", report.items().get(2).message());
+        assertEquals("Email already exists", report.items().get(4).message());
+
+        // ids are read back per item, and the first of the repeated emails is the one stored
+        assertEquals(idOf("ann@example.com"), report.items().get(0).id());
+        assertEquals(idOf("ben@example.com"), report.items().get(1).id());
+        assertEquals("Ann", jdbc.queryForObject("SELECT name FROM students WHERE email = 'ann@example.com'",
+                String.class));
+        assertEquals(1, jdbc.queryForObject("SELECT COUNT(*) FROM students WHERE LOWER(email) = 'ann@example.com'",
+                Integer.class));
+    }
+
+    @Test
+    void patchOfAnotherUsersStudentIsNotFound() {
+        List<StudentDTO> items = Arrays.asList(
+                dto(bobStudentId, "hijacked", null, null),
+                dto(aliceStudentId, "renamed", null, null),
+                dto(null, "no id", null, null),
+                dto(aliceStudentId, "again", null, null));
+
+        StudentBulkService.BulkReport report = service.patch(items, ALICE);
+
+        assertEquals(List.of(0, 1, 2, 3), report.items().stream().map(StudentBulkService.ItemResult::index).toList());
+        assertEquals(List.of(NOT_FOUND, UPDATED, INVALID, DUPLICATE),
+                report.items().stream().map(StudentBulkService.ItemResult::status).toList());
+        assertEquals(1, report.succeeded());
+        assertEquals("theirs", nameOf(bobStudentId));
+        assertEquals("renamed", nameOf(aliceStudentId));
+    }
+
+    @Test
+    void deleteOfAnotherUsersStudentIsNotFound() {
+        StudentBulkService.BulkReport report = service.delete(Arrays.asList(bobStudentId, aliceStudentId, null), ALICE);
+
+        assertEquals(List.of(NOT_FOUND, DELETED, INVALID),
+                report.items().stream().map(StudentBulkService.ItemResult::status).toList());
+        assertEquals(bobStudentId, report.items().get(0).id());
+        assertEquals(1, report.succeeded());
+        assertEquals(1, jdbc.queryForObject("SELECT COUNT(*) FROM students", Integer.class));
+        assertEquals("theirs", nameOf(bobStudentId));
+    }
+
+    private Long idOf(String email) {
+        return jdbc.queryForObject("SELECT id FROM students WHERE email = ?", Long.class, email);
+    }
+
+    private String nameOf(Long id) {
+        return jdbc.queryForObject("SELECT name FROM students WHERE id = ?", String.class, id);
+    }
+
+    private static StudentDTO dto(Long id, String name, String email, Integer age) {
+        return new StudentDTO(id, name, email, age);
+    }
+}
@@ -0,0 +1,162 @@
+package net.codejava.service;
+
+import net.codejava.model.StudentImportJob;
+import net.codejava.repository.StudentImportJobRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = {
+        // main config pins the MySQL dialect, whose InnoDB DDL the embedded H2 rejects
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.sql.init.mode=never",
+        "app.search-cache.enabled=false",
+        "app.text-search.enabled=false",
+        "app.student-import.chunk-size=2"
+})
+@Import({StudentImportService.class, StudentBulkService.class, StudentTextIndex.class, StudentTypeahead.class,
+        SearchPageCache.class, EntityCacheSync.class, SimpleMeterRegistry.class})
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+// jobs run on the import workers, so everything they read has to be committed
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class StudentImportServiceTests {
+
+    private static final Authentication ALICE = new TestingAuthenticationToken("alice", null, "ROLE_USER");
+
+    // the page cache and typeahead are disabled; these only satisfy their constructors
+    @MockitoBean
+    private StringRedisTemplate redis;
+
+    @MockitoBean
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Autowired
+    private StudentImportService service;
+
+    @Autowired
+    private StudentImportJobRepository jobs;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @TempDir
+    private Path dir;
+
+    private Long aliceId;
+
+    @BeforeEach
+    void setUp() {
+        jdbc.update("INSERT INTO users (username, password) VALUES ('alice', '{noop}pw')");
+        aliceId = jdbc.queryForObject("SELECT id FROM users WHERE username = 'alice'", Long.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbc.update("DELETE FROM student_import_jobs");
+        jdbc.update("DELETE FROM students");
+        jdbc.update("DELETE FROM users");
+    }
+
+    @Test
+    void csvResumesAfterCommittedRows() throws Exception {
+        // the first chunk (a, b) committed before the node died; the header is not a row
+        String id = failedJob("CSV", """
+                name,email,age
+                A,a@example.com,20
+                B,b@example.com,21
+                C,c@example.com,22
+                No email,,23
+                A again,a@example.com,24
+                D,d@example.com,25
+                """, 2, 2, 0, 0);
+        insertStudents("a@example.com", "b@example.com");
+
+        StudentImportJob job = resumeAndWait(id);
+
+        assertEquals(StudentImportJob.Status.COMPLETED, job.getStatus());
+        assertEquals(6, job.getCommittedRows());
+        assertEquals(4, job.getCreated());
+        assertEquals(1, job.getDuplicates());
+        assertEquals(1, job.getInvalid());
+        assertEquals(List.of("a@example.com", "b@example.com", "c@example.com", "d@example.com"), emails());
+    }
+
+    @Test
+    void jsonResumePastAnUnbindableRow() throws Exception {
+        // the second row does not bind; it still counted towards the committed offset
+        String id = failedJob("JSON", """
+                [{"name": "A", "email": "ja@example.com", "age": 20},
+                 {"name": "B", "email": "jb@example.com", "age": "twenty"},
+                 {"name": "C", "email": "jc@example.com", "age": 22},
+                 {"name": "D", "email": "jd@example.com", "age": 23}]
+                """, 2, 1, 0, 1);
+        insertStudents("ja@example.com");
+
+        StudentImportJob job = resumeAndWait(id);
+
+        assertEquals(StudentImportJob.Status.COMPLETED, job.getStatus());
+        assertEquals(4, job.getCommittedRows());
+        assertEquals(3, job.getCreated());
+        assertEquals(0, job.getDuplicates());
+        assertEquals(1, job.getInvalid());
+        assertEquals(List.of("ja@example.com", "jc@example.com", "jd@example.com"), emails());
+    }
+
+    // a job that failed after committing its first rows, with the counters those rows produced
+    private String failedJob(String format, String content, long committedRows, long created,
+                             long duplicates, long invalid) throws IOException {
+        String id = UUID.randomUUID().toString();
+        Path file = Files.writeString(dir.resolve(id + "." + format.toLowerCase()), content);
+        jobs.save(new StudentImportJob(id, "alice", format, file.toString()));
+        jdbc.update("UPDATE student_import_jobs SET status = 'FAILED', committed_rows = ?, created = ?, "
+                + "duplicates = ?, invalid = ? WHERE id = ?", committedRows, created, duplicates, invalid, id);
+        return id;
+    }
+
+    private void insertStudents(String... emails) {
+        for (String email : emails) {
+            jdbc.update("INSERT INTO students (name, email, age, user_id) VALUES ('before', ?, 20, ?)", email, aliceId);
+        }
+    }
+
+    private StudentImportJob resumeAndWait(String id) throws InterruptedException {
+        assertTrue(service.resume(id, ALICE).isPresent());
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (System.currentTimeMillis() < deadline) {
+            StudentImportJob job = jobs.findById(id).orElseThrow();
+            if (job.getStatus() == StudentImportJob.Status.COMPLETED
+                    || job.getStatus() == StudentImportJob.Status.FAILED) {
+                return job;
+            }
+            Thread.sleep(50);
+        }
+        return fail("import " + id + " did not finish");
+    }
+
+    private List<String> emails() {
+        return jdbc.queryForList("SELECT email FROM students ORDER BY email", String.class);
+    }
+}
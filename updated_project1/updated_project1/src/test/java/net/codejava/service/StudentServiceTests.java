@@ -0,0 +1,227 @@
+package net.codejava.service;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import net.codejava.dto.StudentDTO;
+import net.codejava.model.AppUser;
+import net.codejava.model.Student;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = {
+        // main config pins the MySQL dialect, whose InnoDB DDL the embedded H2 rejects
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.sql.init.mode=never",
+        "app.search-cache.enabled=false"
+})
+@Import({StudentService.class, CountService.class, StudentTextIndex.class, StudentTypeahead.class,
+        SearchPageCache.class, EntityCacheSync.class, SimpleMeterRegistry.class})
+class StudentServiceTests {
+
+    private static final Authentication ADMIN = new TestingAuthenticationToken("admin", null, "ROLE_ADMIN");
+    private static final Authentication ALICE = new TestingAuthenticationToken("alice", null, "ROLE_USER");
+
+    // the page cache and typeahead are disabled; these only satisfy their constructors
+    @MockitoBean
+    private StringRedisTemplate redis;
+
+    @MockitoBean
+    private ObjectMapper mapper;
+
+    @MockitoBean
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Autowired
+    private StudentService service;
+
+    @Autowired
+    private StudentTextIndex textIndex;
+
+    @Autowired
+    private EntityManager em;
+
+    @Autowired
+    private EntityManagerFactory emf;
+
+    private Statistics stats;
+    private Long aliceStudentId;
+
+    @BeforeEach
+    void setUp() {
+        AppUser alice = new AppUser("alice", "{noop}pw", Set.of("USER"));
+        AppUser bob = new AppUser("bob", "{noop}pw", Set.of("USER", "ADMIN"));
+        em.persist(alice);
+        em.persist(bob);
+        for (int i = 0; i < 15; i++) {
+            Student s = new Student("student" + i, "s" + i + "@example.com", 18 + i, i % 2 == 0 ? alice : bob);
+            em.persist(s);
+            if (aliceStudentId == null) aliceStudentId = s.getId();
+            textIndex.index(s.getId(), s.getName(), s.getEmail());
+        }
+        em.flush();
+        em.clear();
+        stats = emf.unwrap(SessionFactory.class).getStatistics();
+        stats.clear();
+    }
+
+    @Test
+    void adminGetAllIsOneStatement() {
+        List<StudentDTO> all = service.getAll(ADMIN);
+
+        assertEquals(15, all.size());
+        assertTrue(all.stream().allMatch(d -> d.getOwnerUsername() != null));
+        assertEquals(1, stats.getPrepareStatementCount());
+    }
+
+    @Test
+    void adminSearchIsPageQueryPlusCount() {
+        Page<StudentDTO> page = service.search("student", null, null, null,
+                PageRequest.of(0, 5, Sort.by("id").descending()), ADMIN);
+
+        assertEquals(5, page.getContent().size());
+        assertEquals(15, page.getTotalElements());
+        assertNotNull(page.getContent().get(0).getOwnerUsername());
+        assertEquals(2, stats.getPrepareStatementCount());
+    }
+
+    @Test
+    void ownerSearchIsScopedAndHidesOwner() {
+        Page<StudentDTO> page = service.search(null, null, null, null,
+                PageRequest.of(0, 20, Sort.by("id").descending()), ALICE);
+
+        assertEquals(8, page.getTotalElements());
+        assertTrue(page.getContent().stream().allMatch(d -> d.getOwnerUsername() == null));
+        // a short first page needs no count query
+        assertEquals(1, stats.getPrepareStatementCount());
+    }
+
+    @Test
+    void getByIdIsOneStatement() {
+        assertTrue(service.getById(aliceStudentId, ADMIN).isPresent());
+        assertTrue(service.getById(aliceStudentId, ALICE).isPresent());
+        assertEquals(2, stats.getPrepareStatementCount());
+    }
+
+    @Test
+    void keysetScrollRunsNoCount() {
+        Slice<StudentDTO> first = service.searchAfter(null, null, null, null, null, 5, ALICE);
+        assertEquals(5, first.getContent().size());
+        assertTrue(first.hasNext());
+
+        Long last = first.getContent().get(4).getId();
+        Slice<StudentDTO> second = service.searchAfter(null, null, null, null, last, 5, ALICE);
+        assertEquals(3, second.getContent().size());
+        assertFalse(second.hasNext());
+        assertTrue(second.getContent().stream().allMatch(d -> d.getId() < last));
+
+        // one statement per page, never a count
+        assertEquals(2, stats.getPrepareStatementCount());
+    }
+
+    @Test
+    void cachedCountRunsOncePerFilter() {
+        var pageable = PageRequest.of(0, 5, Sort.by("id").descending());
+        var first = service.search("Student ", null, null, null, pageable, CountService.Mode.CACHED, ADMIN);
+        var second = service.search("student", null, null, null, pageable.next(), CountService.Mode.CACHED, ADMIN);
+
+        assertEquals(15, first.page().getTotalElements());
+        assertEquals(15, second.page().getTotalElements());
+        assertEquals(CountService.Mode.CACHED, second.mode());
+        // two page queries, one count shared through the normalized filter
+        assertEquals(3, stats.getPrepareStatementCount());
+    }
+
+    @Test
+    void textSearchUsesTrigramIndexAndVerifiesMatch() {
+        Page<StudentDTO> byEmail = service.search(null, "S11@example", null, null,
+                PageRequest.of(0, 20, Sort.by("id").descending()), ADMIN);
+        assertEquals(List.of("s11@example.com"), byEmail.getContent().stream().map(StudentDTO::getEmail).toList());
+
+        // every trigram of "dent1" is present in student1x, but only those rows contain the term
+        Page<StudentDTO> byName = service.search("dent1", null, null, null,
+                PageRequest.of(0, 20, Sort.by("id").descending()), ADMIN);
+        assertEquals(6, byName.getTotalElements());
+
+        // short terms still work through the plain LIKE
+        Page<StudentDTO> shortTerm = service.search("t9", null, null, null,
+                PageRequest.of(0, 20, Sort.by("id").descending()), ADMIN);
+        assertEquals(1, shortTerm.getTotalElements());
+    }
+
+    @Test
+    void likeWildcardsInTermsBypassTheGramFilter() {
+        // '_' is a LIKE wildcard, as it was before the trigram index: student1_ matches student10..14
+        Page<StudentDTO> page = service.search("student1_", null, null, null,
+                PageRequest.of(0, 20, Sort.by("id").descending()), ADMIN);
+        assertEquals(5, page.getTotalElements());
+    }
+
+    @Test
+    void updateReindexesName() {
+        StudentDTO patch = new StudentDTO(null, "Zelda", null, null);
+        assertTrue(service.updateAdmin(aliceStudentId, patch).isPresent());
+        em.flush();
+
+        Page<StudentDTO> page = service.search("zel", null, null, null,
+                PageRequest.of(0, 20, Sort.by("id").descending()), ADMIN);
+        assertEquals(1, page.getTotalElements());
+        assertEquals(0, service.search("student0", null, null, null,
+                PageRequest.of(0, 20, Sort.by("id").descending()), ADMIN).getTotalElements());
+    }
+
+    @Test
+    void writesUseRowCountForOwnership() {
+        Long bobStudentId = service.getAll(ADMIN).stream()
+                .filter(d -> d.getEmail().equals("s1@example.com")).findFirst().orElseThrow().getId();
+
+        // alice cannot touch bob's student: the scoped UPDATE/DELETE match nothing
+        assertTrue(service.updateSelf(bobStudentId, new StudentDTO(null, null, null, 99), ALICE).isEmpty());
+        assertFalse(service.deleteSelf(bobStudentId, ALICE));
+
+        StudentDTO updated = service.updateSelf(aliceStudentId, new StudentDTO(null, null, null, 99), ALICE)
+                .orElseThrow();
+        assertEquals("student0", updated.getName());
+        assertEquals(99, updated.getAge());
+
+        assertTrue(service.deleteSelf(aliceStudentId, ALICE));
+        assertTrue(service.getById(aliceStudentId, ADMIN).isEmpty());
+        assertFalse(service.deleteAdmin(aliceStudentId));
+    }
+
+    @Test
+    void deleteMatchingRemovesOnlyMatches() {
+        assertEquals(3, service.deleteMatching(null, null, 30, null));
+        assertEquals(12, service.getAll(ADMIN).size());
+        assertTrue(service.getAll(ADMIN).stream().allMatch(d -> d.getAge() < 30));
+    }
+
+    @Test
+    void deleteMatchingByNameRechecksTheGramFilter() {
+        // student1 and student10..student14
+        assertEquals(6, service.deleteMatching("student1", null, null, null));
+        assertEquals(9, service.getAll(ADMIN).size());
+        assertTrue(service.getAll(ADMIN).stream().noneMatch(d -> d.getName().contains("student1")));
+    }
+}
@@ -0,0 +1,96 @@
+package net.codejava.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.endsWith;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class StudentTypeaheadTests {
+
+    private final StringRedisTemplate redis = mock(StringRedisTemplate.class);
+    private StudentTypeahead index;
+
+    @BeforeEach
+    void setUp() {
+        // no startup scan: afterSingletonsInstantiated is never called here
+        index = new StudentTypeahead(null, null, redis,
+                mock(RedisMessageListenerContainer.class), new SimpleMeterRegistry(), true);
+        index.put(1L, "Alice Martin", "alice@example.com", "alice");
+        index.put(2L, "Alan Turing", "alan@example.com", "alice");
+        index.put(3L, "Bob Alder", "bob@example.com", "bob");
+    }
+
+    @Test
+    void shortQueriesMatchPrefixes() {
+        assertEquals(List.of(2L, 1L), ids(index.suggest("al", "alice", 10)));
+        // "Alder" starts a later word, not the field
+        assertEquals(List.of(), ids(index.suggest("al", "bob", 10)));
+    }
+
+    @Test
+    void longerQueriesMatchSubstringsWithinOwner() {
+        assertEquals(List.of(1L), ids(index.suggest("MARTIN", "alice", 10)));
+        assertEquals(List.of(3L), ids(index.suggest("alder", "bob", 10)));
+        assertEquals(List.of(), ids(index.suggest("alder", "alice", 10)));
+    }
+
+    @Test
+    void adminSeesEveryOwner() {
+        List<StudentTypeahead.Hit> hits = index.suggest("example", null, 10);
+        assertEquals(3, hits.size());
+        assertTrue(hits.stream().allMatch(h -> h.ownerUsername() != null));
+    }
+
+    @Test
+    void updatesAndDeletesAreIncremental() {
+        index.update(1L, "Zoe Martin", "zoe@example.com");
+        assertEquals(List.of(), ids(index.suggest("alice", "alice", 10)));
+        assertEquals(List.of(1L), ids(index.suggest("zo", "alice", 10)));
+
+        index.remove(2L);
+        assertEquals(List.of(), ids(index.suggest("turing", "alice", 10)));
+        assertEquals(2, index.stats().documents());
+        assertTrue(index.stats().memoryBytes() > 0);
+    }
+
+    @Test
+    void writesInOneTransactionApplyOnCommitAsOneMessage() {
+        clearInvocations(redis);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            index.put(10L, "Carol King", "carol@example.com", "alice");
+            index.update(1L, "Zoe Martin", "zoe@example.com");
+            index.remove(3L);
+            // nothing is visible before the commit
+            assertEquals(List.of(), ids(index.suggest("carol", "alice", 10)));
+            assertEquals(List.of(3L), ids(index.suggest("alder", "bob", 10)));
+
+            List<TransactionSynchronization> syncs = TransactionSynchronizationManager.getSynchronizations();
+            assertEquals(1, syncs.size());
+            syncs.forEach(TransactionSynchronization::afterCommit);
+            syncs.forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals(List.of(10L), ids(index.suggest("carol", "alice", 10)));
+        assertEquals(List.of(1L), ids(index.suggest("zoe", "alice", 10)));
+        assertEquals(List.of(), ids(index.suggest("alder", "bob", 10)));
+        verify(redis, times(1)).convertAndSend(eq("typeahead:changes"), endsWith("|10,1,3"));
+        verifyNoMoreInteractions(redis);
+    }
+
+    private static List<Long> ids(List<StudentTypeahead.Hit> hits) {
+        return hits.stream().map(StudentTypeahead.Hit::id).toList();
+    }
+}
@@ -0,0 +1,69 @@
+package net.codejava.service;
+
+import io.jsonwebtoken.Jwts;
+import net.codejava.util.VerifiedToken;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class TokenEpochServiceTests {
+
+    private final Map<String, String> store = new HashMap<>();
+    private TokenEpochService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        StringRedisTemplate redis = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> ops = mock(ValueOperations.class);
+        when(redis.opsForValue()).thenReturn(ops);
+        when(ops.get(anyString())).thenAnswer(inv -> store.get(inv.<String>getArgument(0)));
+        doAnswer(inv -> store.put(inv.getArgument(0), inv.getArgument(1)))
+                .when(ops).set(anyString(), anyString(), any(Duration.class));
+        service = new TokenEpochService(redis, mock(RedisMessageListenerContainer.class), Duration.ofSeconds(10));
+    }
+
+    @Test
+    void tokenIssuedRightAfterRevokeAllIsAccepted() {
+        service.revokeAll("alice");
+        // what JwtUtil mints right after a lockout: iat truncated to whole seconds
+        assertFalse(service.isRevoked(token("alice", new Date(System.currentTimeMillis() / 1000 * 1000))));
+    }
+
+    @Test
+    void tokenIssuedRightAfterGlobalRevokeIsAccepted() {
+        service.revokeAllGlobally();
+        assertFalse(service.isRevoked(token("bob", new Date(System.currentTimeMillis() / 1000 * 1000))));
+    }
+
+    @Test
+    void tokensFromEarlierSecondsAreRevoked() {
+        Date before = new Date(System.currentTimeMillis() - 2000);
+        service.revokeAll("alice");
+        assertTrue(service.isRevoked(token("alice", before)));
+        assertFalse(service.isRevoked(token("bob", before)));
+    }
+
+    @Test
+    void millisecondEpochsFromBeforeTheSwitchAreStillHonoured() {
+        store.put("auth:nbf:user:alice", Long.toString(System.currentTimeMillis()));
+        assertTrue(service.isRevoked(token("alice", new Date(System.currentTimeMillis() - 2000))));
+        assertFalse(service.isRevoked(token("alice", new Date(System.currentTimeMillis() + 2000))));
+    }
+
+    private static VerifiedToken token(String subject, Date issuedAt) {
+        return new VerifiedToken("jwt", Jwts.claims().setSubject(subject).setIssuedAt(issuedAt));
+    }
+}
@@ -0,0 +1,91 @@
+package net.codejava.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimePartitionedBloomFilterTests {
+
+    // short partitions so expiry can be observed; far fewer entries than expected, so no false positives
+    private static final long PARTITION_MS = 200;
+
+    @Test
+    void everyAddedValueIsFound() {
+        TimePartitionedBloomFilter filter = new TimePartitionedBloomFilter(60_000, 1_000, 0.01);
+        long now = System.currentTimeMillis();
+        List<String> added = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            String jti = "token-" + i;
+            filter.put(jti, now + 60_000 + (i % 5) * 60_000L);
+            added.add(jti);
+        }
+
+        assertEquals(5, filter.partitionCount());
+        for (String jti : added) {
+            assertTrue(filter.mightContain(jti), jti);
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightContain("other-" + i)) falsePositives++;
+        }
+        // 1% per partition at the expected load, five partitions consulted
+        assertTrue(falsePositives < 1_000, "false positives: " + falsePositives);
+    }
+
+    @Test
+    void expiredPartitionsArePruned() throws InterruptedException {
+        TimePartitionedBloomFilter filter = new TimePartitionedBloomFilter(PARTITION_MS, 1_000, 0.001);
+        long start = nextBoundary();
+        filter.put("short", start + PARTITION_MS / 2);
+        filter.put("long", start + 3 * PARTITION_MS + PARTITION_MS / 2);
+        assertEquals(2, filter.partitionCount());
+
+        sleepUntil(start + 2 * PARTITION_MS + PARTITION_MS / 4);
+
+        assertFalse(filter.mightContain("short"));
+        assertTrue(filter.mightContain("long"));
+        assertEquals(1, filter.partitionCount());
+    }
+
+    @Test
+    void entryExpiringMidPartitionIsFoundUntilItsPartitionEnds() throws InterruptedException {
+        TimePartitionedBloomFilter filter = new TimePartitionedBloomFilter(PARTITION_MS, 1_000, 0.001);
+        long start = nextBoundary();
+        long expiresAt = start + 2 * PARTITION_MS + PARTITION_MS / 2;
+        filter.put("jti", expiresAt);
+
+        // two partition boundaries have passed, the entry has not expired yet
+        sleepUntil(start + 2 * PARTITION_MS + PARTITION_MS / 4);
+        assertTrue(filter.mightContain("jti"));
+
+        sleepUntil(start + 3 * PARTITION_MS + PARTITION_MS / 4);
+        assertFalse(filter.mightContain("jti"));
+        assertEquals(0, filter.partitionCount());
+    }
+
+    @Test
+    void alreadyExpiredEntriesAreNotStored() {
+        TimePartitionedBloomFilter filter = new TimePartitionedBloomFilter(PARTITION_MS, 1_000, 0.001);
+        filter.put("jti", System.currentTimeMillis() - 1);
+
+        assertFalse(filter.mightContain("jti"));
+        assertEquals(0, filter.partitionCount());
+    }
+
+    // start of the next partition, so a test does not straddle a boundary it did not plan for
+    private static long nextBoundary() throws InterruptedException {
+        long start = (System.currentTimeMillis() / PARTITION_MS + 1) * PARTITION_MS;
+        sleepUntil(start);
+        return start;
+    }
+
+    private static void sleepUntil(long millis) throws InterruptedException {
+        long wait;
+        while ((wait = millis - System.currentTimeMillis()) > 0) {
+            Thread.sleep(wait);
+        }
+    }
+}